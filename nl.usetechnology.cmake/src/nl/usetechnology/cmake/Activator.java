@@ -3,6 +3,9 @@ package nl.usetechnology.cmake;
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
@@ -11,11 +14,14 @@ import org.eclipse.core.variables.IStringVariableManager;
 import org.eclipse.core.variables.VariablesPlugin;
 import org.eclipse.ui.console.ConsolePlugin;
 import org.eclipse.ui.console.IConsole;
+import org.eclipse.ui.console.IConsoleListener;
 import org.eclipse.ui.console.IConsoleManager;
 import org.eclipse.ui.console.MessageConsole;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
 
+import nl.usetechnology.cmake.helper.ToolchainCatalog;
+
 /**
  * The activator class controls the plug-in life cycle
  */
@@ -33,8 +39,16 @@ public class Activator extends AbstractUIPlugin {
 	public static final String PREF_STORE_MAKE_ARGS = "USE_CMAKE_MAKE_ARGS";
 	public static final String PREF_STORE_CMAKE_ARGS = "USE_CMAKE_CMAKE_ARGS";
 	public static final String PREF_STORE_TOUCH_ARGS = "USE_CMAKE_CMAKE_TOUCH";
+	public static final String PREF_STORE_TOUCH_MODE = "USE_CMAKE_CMAKE_TOUCH_MODE";
 	public static final String PREF_STORE_DEFAULT_TOOLCHAIN = "USE_CMAKE_DEFAULT_TC";
 	public static final String PREF_STORE_BUILD_CONF = "USE_CMAKE_BUILD_CONFIG";
+	public static final String PREF_STORE_OUTPUT_LINES = "USE_CMAKE_OUTPUT_LINES";
+	public static final String PREF_STORE_EVENT_QUIET_WINDOW = "USE_CMAKE_EVENT_QUIET_WINDOW";
+	public static final String PREF_STORE_IGNORE_PATTERNS = "USE_CMAKE_IGNORE_PATTERNS";
+	public static final String PREF_STORE_BACKEND = "USE_CMAKE_BACKEND";
+	public static final String PREF_STORE_OUTPUT_FILTERS = "USE_CMAKE_OUTPUT_FILTERS";
+	public static final String PREF_STORE_CONSOLE_COUNT = "USE_CMAKE_CONSOLE_COUNT";
+	public static final String PREF_STORE_CONSOLE_BUDGET = "USE_CMAKE_CONSOLE_BUDGET";
 	
 	public static final String PREF_STORE_BUILD_SYS_DEFAULT = "Eclipse CDT4 - Unix Makefiles";
 	public static final String PREF_STORE_MAKE_ARGS_DEFAULT = "-j" + Runtime.getRuntime().availableProcessors();
@@ -43,9 +57,38 @@ public class Activator extends AbstractUIPlugin {
 	public static final String PREF_STORE_CMAKE_PATH_DEFAULT = "";
 	public static final String PREF_STORE_BIN_PATH_DEFAULT = "bin";
 	public static final boolean PREF_STORE_CMAKE_TOUCH_DEFAULT = true;
+	public static final String TOUCH_MODE_TIMESTAMP = "timestamp";
+	public static final String TOUCH_MODE_REWRITE = "rewrite";
+	public static final String PREF_STORE_TOUCH_MODE_DEFAULT = TOUCH_MODE_TIMESTAMP;
+	public static final String BACKEND_ECLIPSE = "eclipse";
+	public static final String BACKEND_FILE_API = "fileapi";
+	public static final String PREF_STORE_BACKEND_DEFAULT = BACKEND_ECLIPSE;
+	public static final int PREF_STORE_OUTPUT_LINES_DEFAULT = 500;
+	public static final int PREF_STORE_EVENT_QUIET_WINDOW_DEFAULT = 500;
+	public static final int PREF_STORE_CONSOLE_COUNT_DEFAULT = 4;
+	public static final int PREF_STORE_CONSOLE_BUDGET_DEFAULT = 1000000;
+	public static final String OUTPUT_FILTER_SEPARATOR = "\n";
+	public static final String PREF_STORE_OUTPUT_FILTERS_DEFAULT = "fold ^-- (Looking for|Performing Test|Check|Detecting) ";
+	public static final String PREF_STORE_IGNORE_PATTERNS_DEFAULT = "*~" + File.pathSeparator + "*.bak" + File.pathSeparator + "*.orig" + File.pathSeparator + "*.swp" + File.pathSeparator + ".git" + File.pathSeparator + ".svn";
 	
 	// The shared instance
 	private static Activator plugin;
+
+	private static final Map<String, MessageConsole> consoles = new ConcurrentHashMap<>();
+
+	private static final AtomicBoolean consoleListenerAdded = new AtomicBoolean();
+
+	private static final IConsoleListener consoleListener = new IConsoleListener() {
+		@Override
+		public void consolesAdded(IConsole[] added) {
+		}
+
+		@Override
+		public void consolesRemoved(IConsole[] removed) {
+			// closed by the user, created again on the next output
+			consoles.values().removeAll(Arrays.asList(removed));
+		}
+	};
 	
 	/**
 	 * The constructor
@@ -58,6 +101,14 @@ public class Activator extends AbstractUIPlugin {
 		getPreferenceStore().setDefault(PREF_STORE_CMAKE_PATH, PREF_STORE_CMAKE_PATH_DEFAULT);
 		getPreferenceStore().setDefault(PREF_STORE_BIN_PATH, PREF_STORE_BIN_PATH_DEFAULT);
 		getPreferenceStore().setDefault(PREF_STORE_TOUCH_ARGS, PREF_STORE_CMAKE_TOUCH_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_TOUCH_MODE, PREF_STORE_TOUCH_MODE_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_OUTPUT_LINES, PREF_STORE_OUTPUT_LINES_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_EVENT_QUIET_WINDOW, PREF_STORE_EVENT_QUIET_WINDOW_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_IGNORE_PATTERNS, PREF_STORE_IGNORE_PATTERNS_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_BACKEND, PREF_STORE_BACKEND_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_OUTPUT_FILTERS, PREF_STORE_OUTPUT_FILTERS_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_CONSOLE_COUNT, PREF_STORE_CONSOLE_COUNT_DEFAULT);
+		getPreferenceStore().setDefault(PREF_STORE_CONSOLE_BUDGET, PREF_STORE_CONSOLE_BUDGET_DEFAULT);
 	}
 
 	/*
@@ -76,6 +127,7 @@ public class Activator extends AbstractUIPlugin {
 	 */
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		ToolchainCatalog.shutdown();
 		plugin = null;
 		super.stop(context);
 
@@ -122,17 +174,43 @@ public class Activator extends AbstractUIPlugin {
 		getLog().log(new Status(severity, PLUGIN_ID, message, t));
 	}
 
+	/**
+	 * @return the console with the given name, created if needed. Consoles are
+	 *         cached until they are removed from the console manager.
+	 */
 	public static MessageConsole findConsole(String name) {
-		ConsolePlugin plugin = ConsolePlugin.getDefault();
-		IConsoleManager conMan = plugin.getConsoleManager();
-		IConsole[] existing = conMan.getConsoles();
-		for (int i = 0; i < existing.length; i++)
-			if (name.equals(existing[i].getName()))
-				return (MessageConsole) existing[i];
-		// no console found, so create a new one
-		MessageConsole myConsole = new MessageConsole(name, null);
-		conMan.addConsoles(new IConsole[] { myConsole });
-		return myConsole;
+		MessageConsole console = consoles.get(name);
+		if (console != null) {
+			return console;
+		}
+		synchronized (consoles) {
+			ConsolePlugin plugin = ConsolePlugin.getDefault();
+			IConsoleManager conMan = plugin.getConsoleManager();
+			if (consoleListenerAdded.compareAndSet(false, true)) {
+				conMan.addConsoleListener(consoleListener);
+			}
+			console = consoles.get(name);
+			if (console != null) {
+				return console;
+			}
+			IConsole[] existing = conMan.getConsoles();
+			for (int i = 0; i < existing.length; i++) {
+				if (name.equals(existing[i].getName()) && existing[i] instanceof MessageConsole) {
+					console = (MessageConsole) existing[i];
+					break;
+				}
+			}
+			if (console == null) {
+				// no console found, so create a new one
+				console = new MessageConsole(name, null);
+				// old output is trimmed instead of growing without bounds
+				int budget = getConsoleBudget();
+				console.setWaterMarks(budget * 4 / 5, budget);
+				conMan.addConsoles(new IConsole[] { console });
+			}
+			consoles.put(name, console);
+			return console;
+		}
 	}
 	
 	public static void showConsole(String name) {
@@ -168,6 +246,56 @@ public class Activator extends AbstractUIPlugin {
 		return getDefault().getPreferenceStore().getBoolean(PREF_STORE_TOUCH_ARGS);
 	}
 
+	/**
+	 * @return {@link #TOUCH_MODE_TIMESTAMP} or {@link #TOUCH_MODE_REWRITE}
+	 */
+	public static String getTouchMode() {
+		return getDefault().getPreferenceStore().getString(PREF_STORE_TOUCH_MODE);
+	}
+
+	/**
+	 * @return {@link #BACKEND_ECLIPSE} or {@link #BACKEND_FILE_API}
+	 */
+	public static String getBackend() {
+		return getDefault().getPreferenceStore().getString(PREF_STORE_BACKEND);
+	}
+
+	/**
+	 * @return the number of cmake output lines retained in memory per stream
+	 */
+	public static int getRetainedOutputLines() {
+		return getDefault().getPreferenceStore().getInt(PREF_STORE_OUTPUT_LINES);
+	}
+
+	/**
+	 * @return the time (in ms) without resource changes after which touching
+	 *         and copying of project files starts
+	 */
+	public static int getEventQuietWindow() {
+		return getDefault().getPreferenceStore().getInt(PREF_STORE_EVENT_QUIET_WINDOW);
+	}
+
+	/**
+	 * @return the raw list of output filters, separated by {@link #OUTPUT_FILTER_SEPARATOR}
+	 */
+	public static String getOutputFilters() {
+		return getDefault().getPreferenceStore().getString(PREF_STORE_OUTPUT_FILTERS);
+	}
+
+	/**
+	 * @return the number of project consoles kept open
+	 */
+	public static int getMaxConsoles() {
+		return getDefault().getPreferenceStore().getInt(PREF_STORE_CONSOLE_COUNT);
+	}
+
+	/**
+	 * @return the number of characters a console keeps before old output is trimmed
+	 */
+	public static int getConsoleBudget() {
+		return getDefault().getPreferenceStore().getInt(PREF_STORE_CONSOLE_BUDGET);
+	}
+
 	public static String getDefaultToolchain() {
 		return getDefault().getPreferenceStore().getString(PREF_STORE_DEFAULT_TOOLCHAIN);
 	}
@@ -192,6 +320,13 @@ public class Activator extends AbstractUIPlugin {
 		return replacePathVariables(getDefault().getPreferenceStore().getString(PREF_STORE_BIN_PATH));
 	}
 	
+	/**
+	 * @return the raw list of name patterns, separated by {@link File#pathSeparator}
+	 */
+	public static String getIgnorePatterns() {
+		return getDefault().getPreferenceStore().getString(PREF_STORE_IGNORE_PATTERNS);
+	}
+
 	public static List<String> getBuildConfigurations() {
 		return Arrays.asList(getDefault().getPreferenceStore().getString(PREF_STORE_BUILD_CONF).split(File.pathSeparator));
 	}
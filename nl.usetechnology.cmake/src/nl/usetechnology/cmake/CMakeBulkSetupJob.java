@@ -0,0 +1,143 @@
+package nl.usetechnology.cmake;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.ui.progress.IProgressConstants;
+
+import nl.usetechnology.cmake.process.ProcessOutputPump;
+
+/**
+ * Re-runs cmake for several projects. The work itself is submitted to the
+ * {@link CMakeProjectJob} of each project (so it is still serialized with
+ * any other CMake work of that project), but only a bounded number of
+ * projects is configured at the same time.
+ */
+public class CMakeBulkSetupJob extends Job {
+
+	/**
+	 * Rough amount of heap a single configure run occupies (output buffers,
+	 * copied project files, resource deltas).
+	 */
+	private static final long HEAP_PER_CONFIGURE = 64L * 1024 * 1024;
+
+	private static final long POLL_INTERVAL_MS = 200;
+
+	private final List<IProject> projects;
+
+	private static class Result {
+		final IProject project;
+		final IStatus status;
+
+		Result(IProject project, IStatus status) {
+			this.project = project;
+			this.status = status;
+		}
+	}
+
+	public CMakeBulkSetupJob(Collection<IProject> projects) {
+		super("Refresh " + projects.size() + " CMake projects");
+		this.projects = new ArrayList<>(projects);
+		setProperty(IProgressConstants.KEEP_PROPERTY, Boolean.TRUE);
+	}
+
+	/**
+	 * @return all open projects of the workspace carrying the {@link CMakeNature}
+	 */
+	public static List<IProject> getCMakeProjects() {
+		List<IProject> result = new ArrayList<>();
+		for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects()) {
+			if (project.isOpen() && CMakeNature.isCMakeProject(project)) {
+				result.add(project);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Number of projects configured at once: one per core, but no more than
+	 * the currently available heap allows.
+	 */
+	static int getParallelism() {
+		Runtime runtime = Runtime.getRuntime();
+		long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+		long availableMemory = runtime.maxMemory() - usedMemory;
+		int byMemory = (int) Math.min(Integer.MAX_VALUE, availableMemory / HEAP_PER_CONFIGURE);
+		return Math.max(1, Math.min(runtime.availableProcessors(), byMemory));
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor) {
+		int total = projects.size();
+		int parallelism = Math.min(getParallelism(), total);
+		monitor.beginTask(getName(), total);
+
+		final BlockingQueue<Result> finished = new LinkedBlockingQueue<>();
+		CMakeRequest.Callback callback = new CMakeRequest.Callback() {
+			@Override
+			public void done(IProject project, IStatus status) {
+				finished.add(new Result(project, status));
+			}
+		};
+
+		MultiStatus summary = new MultiStatus(Activator.PLUGIN_ID, 0, "CMake refresh summary", null);
+		Iterator<IProject> pending = projects.iterator();
+		int running = 0;
+		int done = 0;
+		int failed = 0;
+		try {
+			while (done < total) {
+				while (running < parallelism && pending.hasNext() && !monitor.isCanceled()) {
+					CMakeProjectJob.submit(pending.next(), CMakeRequest.setup().whenDone(callback));
+					running++;
+				}
+				if (running == 0) {
+					break; // cancelled and nothing in flight anymore
+				}
+				Result result = finished.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+				if (result == null) {
+					continue;
+				}
+				running--;
+				done++;
+				if (result.status.getSeverity() >= IStatus.WARNING) {
+					failed++;
+					summary.add(new Status(result.status.getSeverity(), Activator.PLUGIN_ID,
+							result.project.getName() + ": " + result.status.getMessage(), result.status.getException()));
+				} else {
+					summary.add(new Status(IStatus.INFO, Activator.PLUGIN_ID, result.project.getName() + ": OK"));
+				}
+				ProcessOutputPump pump = ProcessOutputPump.instance();
+				monitor.subTask(done + "/" + total + " projects refreshed, " + failed + " failed ("
+						+ pump.getActiveProcessCount() + " cmake processes, "
+						+ pump.getActivePumpThreadCount() + " output pumps active)");
+				monitor.worked(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			monitor.done();
+		}
+
+		String message = done + " of " + total + " CMake projects refreshed, " + failed + " failed";
+		setName(message);
+		Activator.logInfo(message);
+		if (done < total) {
+			return Status.CANCEL_STATUS;
+		}
+		return new MultiStatus(Activator.PLUGIN_ID, 0, summary.getChildren(), message, null);
+	}
+
+}
@@ -0,0 +1,169 @@
+package nl.usetechnology.cmake;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.core.resources.IProject;
+
+import nl.usetechnology.cmake.helper.PluginDataIO;
+
+/**
+ * Parsed content of a <code>CMakeCache.txt</code> (all
+ * <code>KEY:TYPE=VALUE</code> entries). Instances are immutable and shared;
+ * {@link #get(IProject, String)} parses the file again only if its
+ * modification time or size changed.
+ */
+public class CMakeCache {
+
+	public static final String CACHE_FILE = "CMakeCache.txt";
+
+	public static final String CMAKE_BUILD_TYPE = "CMAKE_BUILD_TYPE";
+
+	public static final String CMAKE_GENERATOR = "CMAKE_GENERATOR";
+
+	public static final String CMAKE_EXTRA_GENERATOR = "CMAKE_EXTRA_GENERATOR";
+
+	public static class Entry {
+		private final String type;
+		private final String value;
+
+		Entry(String type, String value) {
+			this.type = type;
+			this.value = value;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+
+	private static final ConcurrentMap<File, CMakeCache> caches = new ConcurrentHashMap<>();
+
+	private final long lastModified;
+	private final long length;
+	private final Map<String, Entry> entries;
+
+	private CMakeCache(long lastModified, long length, Map<String, Entry> entries) {
+		this.lastModified = lastModified;
+		this.length = length;
+		this.entries = entries;
+	}
+
+	public static File getCacheFile(IProject project, String architecture) {
+		return new File(PluginDataIO.getBuildDirectory(project, architecture), CACHE_FILE);
+	}
+
+	/**
+	 * @return the cache of the given toolchain's build directory (empty if the
+	 *         project has not been configured for it yet)
+	 */
+	public static CMakeCache get(IProject project, String architecture) {
+		return get(getCacheFile(project, architecture));
+	}
+
+	public static CMakeCache get(File file) {
+		long lastModified = file.lastModified();
+		long length = file.length();
+		CMakeCache cache = caches.get(file);
+		if (cache != null && cache.lastModified == lastModified && cache.length == length) {
+			return cache;
+		}
+		Map<String, Entry> entries;
+		try {
+			entries = lastModified == 0 ? Collections.<String, Entry>emptyMap() : parse(file);
+		} catch (IOException e) {
+			Activator.logInfo("Unable to read " + file + ": " + e.getLocalizedMessage());
+			entries = Collections.emptyMap();
+		}
+		cache = new CMakeCache(lastModified, length, entries);
+		caches.put(file, cache);
+		return cache;
+	}
+
+	private static Map<String, Entry> parse(File file) throws IOException {
+		Map<String, Entry> entries = new HashMap<>();
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+			String line;
+			while ((line = br.readLine()) != null) {
+				parseLine(line, entries);
+			}
+		}
+		return Collections.unmodifiableMap(entries);
+	}
+
+	/**
+	 * Splits a <code>KEY:TYPE=VALUE</code> line. The key may be quoted, the
+	 * type is optional.
+	 */
+	private static void parseLine(String line, Map<String, Entry> entries) {
+		int length = line.length();
+		int pos = 0;
+		while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+			pos++;
+		}
+		if (pos == length || line.charAt(pos) == '#' || line.startsWith("//", pos)) {
+			return;
+		}
+		String key;
+		if (line.charAt(pos) == '"') {
+			int end = line.indexOf('"', pos + 1);
+			if (end < 0) {
+				return;
+			}
+			key = line.substring(pos + 1, end);
+			pos = end + 1;
+		} else {
+			int start = pos;
+			while (pos < length && line.charAt(pos) != ':' && line.charAt(pos) != '=') {
+				pos++;
+			}
+			key = line.substring(start, pos).trim();
+		}
+		String type = "";
+		if (pos < length && line.charAt(pos) == ':') {
+			int equals = line.indexOf('=', pos);
+			if (equals < 0) {
+				return;
+			}
+			type = line.substring(pos + 1, equals);
+			pos = equals;
+		}
+		if (pos >= length || line.charAt(pos) != '=') {
+			return;
+		}
+		entries.put(key, new Entry(type, line.substring(pos + 1)));
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	public Entry getEntry(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * @return the value of the entry or <code>null</code> if it does not exist
+	 */
+	public String getValue(String key) {
+		Entry entry = entries.get(key);
+		return entry == null ? null : entry.getValue();
+	}
+
+	public Map<String, Entry> getEntries() {
+		return entries;
+	}
+
+}
@@ -0,0 +1,328 @@
+package nl.usetechnology.cmake;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import nl.usetechnology.cmake.console.LineRingBuffer;
+import nl.usetechnology.cmake.process.ProcessOutputPump;
+
+/**
+ * What the configured cmake binary can do: its version, the eclipse
+ * generators and the features the launcher may use. Probing spawns cmake
+ * twice, so the result is kept per binary path and modification time and
+ * persisted in the state location of the plugin.
+ */
+public class CMakeCapabilities {
+
+	public interface Listener {
+		/**
+		 * Called (on an arbitrary thread) after the capabilities of a new
+		 * cmake binary became available.
+		 */
+		void capabilitiesChanged(CMakeCapabilities capabilities);
+	}
+
+	private static final String STATE_FILE = "cmake-capabilities.properties";
+
+	private static final int MAX_HELP_LINES = 10000;
+
+	private static final Pattern VERSION_PATTERN = Pattern.compile("cmake\\S* version (\\d+)\\.(\\d+)(?:\\.(\\d+))?.*");
+
+	private static final Pattern MAJOR_MINOR_PATTERN = Pattern.compile("(\\d+)\\.(\\d+).*");
+
+	private static final Pattern ECLIPSE_GENERATOR_PATTERN = Pattern.compile("\\s*(Eclipse[^=]+)=.*");
+
+	private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private static volatile CMakeCapabilities current;
+
+	private static Job probeJob;
+
+	private final String binary;
+	private final long lastModified;
+	private final String version;
+	private final int major;
+	private final int minor;
+	private final List<String> generators;
+
+	private CMakeCapabilities(String binary, long lastModified, String version, List<String> generators) {
+		this.binary = binary;
+		this.lastModified = lastModified;
+		this.version = version;
+		this.generators = Collections.unmodifiableList(generators);
+		Matcher m = MAJOR_MINOR_PATTERN.matcher(version);
+		if (m.matches()) {
+			this.major = Integer.parseInt(m.group(1));
+			this.minor = Integer.parseInt(m.group(2));
+		} else {
+			this.major = 0;
+			this.minor = 0;
+		}
+	}
+
+	/**
+	 * @return the version as reported by <code>cmake --version</code>, empty if unknown
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the eclipse generators, e.g. "Eclipse CDT4 - Unix Makefiles"
+	 */
+	public List<String> getGenerators() {
+		return generators;
+	}
+
+	public boolean isAtLeast(int requiredMajor, int requiredMinor) {
+		return major > requiredMajor || (major == requiredMajor && minor >= requiredMinor);
+	}
+
+	/**
+	 * @return <code>true</code> if cmake answers file API queries (3.14)
+	 */
+	public boolean isFileApiSupported() {
+		return isAtLeast(3, 14);
+	}
+
+	/**
+	 * @return <code>true</code> if cmake can discard an existing cache with <code>--fresh</code> (3.24)
+	 */
+	public boolean isFreshSupported() {
+		return isAtLeast(3, 24);
+	}
+
+	/**
+	 * @return the capabilities of the configured cmake binary, or
+	 *         <code>null</code> if they are not known yet; probing is then
+	 *         started in the background and the listeners are notified
+	 */
+	public static CMakeCapabilities get() {
+		File binary = resolveBinary();
+		CMakeCapabilities capabilities = lookup(binary);
+		if (capabilities == null) {
+			scheduleProbe();
+		}
+		return capabilities;
+	}
+
+	/**
+	 * @return the capabilities of the configured cmake binary, probing it if
+	 *         needed. Blocks, so only to be called from a job.
+	 */
+	public static CMakeCapabilities getOrProbe() {
+		File binary = resolveBinary();
+		CMakeCapabilities capabilities = lookup(binary);
+		if (capabilities == null) {
+			capabilities = probe(binary);
+		}
+		return capabilities;
+	}
+
+	public static void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	private static CMakeCapabilities lookup(File binary) {
+		CMakeCapabilities capabilities = current;
+		if (capabilities == null) {
+			capabilities = load();
+			current = capabilities;
+		}
+		if (capabilities != null && capabilities.binary.equals(binary.getPath()) && capabilities.lastModified == binary.lastModified()) {
+			return capabilities;
+		}
+		return null;
+	}
+
+	private static synchronized void scheduleProbe() {
+		if (probeJob != null) {
+			return;
+		}
+		probeJob = new Job("Detecting cmake capabilities") {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					probe(resolveBinary());
+				} finally {
+					synchronized (CMakeCapabilities.class) {
+						probeJob = null;
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		probeJob.setSystem(true);
+		probeJob.schedule();
+	}
+
+	private static CMakeCapabilities probe(File binary) {
+		String command = binary.getPath();
+		String version = "";
+		List<String> versionOutput = run(command, "--version");
+		for (String line : versionOutput) {
+			Matcher m = VERSION_PATTERN.matcher(line.trim());
+			if (m.matches()) {
+				version = m.group(1) + "." + m.group(2) + (m.group(3) != null ? "." + m.group(3) : "");
+				break;
+			}
+		}
+		List<String> generators = parseGenerators(run(command, "--help"));
+		CMakeCapabilities capabilities = new CMakeCapabilities(command, binary.lastModified(), version, generators);
+		current = capabilities;
+		if (!version.isEmpty()) {
+			// a failed probe is repeated in the next session
+			store(capabilities);
+		}
+		for (Listener listener : listeners) {
+			listener.capabilitiesChanged(capabilities);
+		}
+		return capabilities;
+	}
+
+	private static List<String> run(String... command) {
+		LineRingBuffer out = new LineRingBuffer(MAX_HELP_LINES);
+		LineRingBuffer err = new LineRingBuffer(MAX_HELP_LINES);
+		try {
+			Process process = new ProcessBuilder(command).start();
+			ProcessOutputPump.instance().waitFor(process, out, err);
+		} catch (IOException e) {
+			Activator.logWarning("Unable to run " + Arrays.toString(command), e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return out.getLines();
+	}
+
+	/**
+	 * Extracts the eclipse generators from the output of <code>cmake --help</code>.
+	 * A generator description can be wrapped over several lines.
+	 */
+	private static List<String> parseGenerators(List<String> helpLines) {
+		List<String> eclipseGenerators = new ArrayList<>();
+		StringBuilder buff = new StringBuilder();
+		boolean capture = false;
+		int leadingSpaces = -1;
+
+		for (String line : helpLines) {
+			if (!capture) {
+				if (line.startsWith("Generators")) {
+					capture = true;
+				}
+				continue;
+			}
+			if (!line.matches("\\s+.*")) {
+				continue;
+			}
+			if (leadingSpaces == -1) {
+				leadingSpaces = 0;
+				while (line.charAt(leadingSpaces) == ' ') {
+					++leadingSpaces;
+				}
+			}
+			if (line.length() > leadingSpaces + 1 && line.charAt(leadingSpaces + 1) != ' ' && buff.length() > 0) {
+				appendGenerator(eclipseGenerators, buff);
+			}
+			buff.append(line);
+		}
+		appendGenerator(eclipseGenerators, buff);
+		return eclipseGenerators;
+	}
+
+	private static void appendGenerator(List<String> eclipseGenerators, StringBuilder buff) {
+		String mergedGeneratorLine = buff.toString().replaceAll("\\n\\r", "").trim();
+		Matcher m = ECLIPSE_GENERATOR_PATTERN.matcher(mergedGeneratorLine);
+		if (m.matches()) {
+			eclipseGenerators.add(m.group(1).trim());
+		}
+		buff.setLength(0);
+	}
+
+	/**
+	 * Resolves the configured cmake (or "cmake" on the PATH) to a file, so
+	 * its modification time can be checked.
+	 */
+	static File resolveBinary() {
+		String configured = Activator.getCMakePath();
+		if (!configured.isEmpty()) {
+			return new File(configured);
+		}
+		String executable = Platform.getOS().equals(Platform.OS_WIN32) ? "cmake.exe" : "cmake";
+		String path = System.getenv("PATH");
+		if (path != null) {
+			for (String directory : path.split(File.pathSeparator)) {
+				File candidate = new File(directory, executable);
+				if (candidate.isFile()) {
+					return candidate;
+				}
+			}
+		}
+		return new File("cmake");
+	}
+
+	private static File getStateFile() {
+		return Activator.getDefault().getStateLocation().append(STATE_FILE).toFile();
+	}
+
+	private static CMakeCapabilities load() {
+		File file = getStateFile();
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+			String generators = properties.getProperty("generators", "");
+			return new CMakeCapabilities(properties.getProperty("binary", ""),
+					Long.parseLong(properties.getProperty("lastModified", "0")), properties.getProperty("version", ""),
+					generators.isEmpty() ? new ArrayList<String>() : new ArrayList<>(Arrays.asList(generators.split("\n"))));
+		} catch (IOException | NumberFormatException e) {
+			Activator.logWarning("Unable to read " + file, e);
+			return null;
+		}
+	}
+
+	private static void store(CMakeCapabilities capabilities) {
+		Properties properties = new Properties();
+		properties.setProperty("binary", capabilities.binary);
+		properties.setProperty("lastModified", Long.toString(capabilities.lastModified));
+		properties.setProperty("version", capabilities.version);
+		StringBuilder generators = new StringBuilder();
+		for (String generator : capabilities.generators) {
+			if (generators.length() > 0) {
+				generators.append('\n');
+			}
+			generators.append(generator);
+		}
+		properties.setProperty("generators", generators.toString());
+		File file = getStateFile();
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "cmake capabilities");
+		} catch (IOException e) {
+			Activator.logWarning("Unable to write " + file, e);
+		}
+	}
+
+}
@@ -1,26 +1,45 @@
 package nl.usetechnology.cmake;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import nl.usetechnology.cmake.console.CMakeConsole;
+import nl.usetechnology.cmake.console.CMakeConsoles;
+import nl.usetechnology.cmake.console.FilteringLineConsumer;
+import nl.usetechnology.cmake.console.LineConsumer;
+import nl.usetechnology.cmake.console.LineRingBuffer;
+import nl.usetechnology.cmake.console.OutputFilter;
+import nl.usetechnology.cmake.console.TeeLineConsumer;
+import nl.usetechnology.cmake.helper.CProjectLanguageSettings;
+import nl.usetechnology.cmake.event.ModificationJournal;
+import nl.usetechnology.cmake.fileapi.CMakeProjectModel;
+import nl.usetechnology.cmake.fileapi.FileApi;
+import nl.usetechnology.cmake.helper.ConfigureFingerprint;
 import nl.usetechnology.cmake.helper.FileContentIO;
+import nl.usetechnology.cmake.helper.MakefileCMake;
 import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.helper.ResourceRefresher;
+import nl.usetechnology.cmake.helper.StringShellTokenizer;
+import nl.usetechnology.cmake.helper.ToolchainCatalog;
+import nl.usetechnology.cmake.problems.CMakeDiagnosticsParser;
+import nl.usetechnology.cmake.problems.CMakeProblemMarkers;
+import nl.usetechnology.cmake.process.ProcessOutputPump;
+import nl.usetechnology.cmake.settings.CompileCommandsDatabase;
+import nl.usetechnology.cmake.settings.CompileCommandsLanguageSettingsProvider;
+import nl.usetechnology.cmake.settings.ProjectModelLanguageSettingsProvider;
 
 import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.index.IIndexManager;
 import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICElement;
 import org.eclipse.cdt.core.model.ICProject;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.WorkspaceJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IContributor;
 import org.eclipse.core.runtime.IExtension;
@@ -32,52 +51,31 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.widgets.Display;
-import org.eclipse.ui.console.MessageConsole;
-import org.eclipse.ui.console.MessageConsoleStream;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.Version;
 
 
 public class CMakeLauncher {
-	// FIXME: Protect, that jobs are not scheduled in parallel for the same project
-	
-	class StreamGobbler extends Thread {
-		private StringBuilder sb = new StringBuilder();
-		private InputStream in;
-		public StreamGobbler(InputStream in) {
-			this.in = in;
-		}
-		
-		@Override
-		public void run() {
-			try {
-				BufferedReader br = new BufferedReader(new InputStreamReader(in));
-				String line;
-				while((line = br.readLine()) != null) {
-					sb.append(line).append('\n');
-				}
-				br.close();
-			} catch(IOException ioe) {
-				
-			}
-		}
-		
-		public CharSequence getOutput() {
-			return sb;
-		}
-		
-	}
 
-	private static final String GENERATE_ECLIPSE_PROJECT = "-G \"$BUILD_SYS$\" -D_ECLIPSE_VERSION=$VERSION$ -DCMAKE_ECLIPSE_GENERATE_LINKED_RESOURCES=FALSE";
+	private static final String ECLIPSE_VERSION = "-D_ECLIPSE_VERSION=";
+
+	private static final String ECLIPSE_NO_LINKED_RESOURCES = "-DCMAKE_ECLIPSE_GENERATE_LINKED_RESOURCES=FALSE";
+
+	/** Prefix of the extra generators, not used by the file API backend. */
+	private static final String ECLIPSE_GENERATOR_PREFIX = "Eclipse CDT4 - ";
+	/** CMAKE_EXTRA_GENERATOR of a build tree configured with the prefix. */
+	private static final String ECLIPSE_EXTRA_GENERATOR = "Eclipse CDT4";
+
+	private static final String ECLIPSE_MAKE_ARGUMENTS = "-DCMAKE_ECLIPSE_MAKE_ARGUMENTS=";
 	
-	private static final String SETUP_MODULE_PATH = "-DCMAKE_MODULE_PATH=\"$PATH_TO_MODULES$\"";
+	private static final String SETUP_MODULE_PATH = "-DCMAKE_MODULE_PATH=";
 
-	private static final String CMAKE_BUILD_TYPE = "-DCMAKE_BUILD_TYPE=$BUILDTYPE$";
+	private static final String CMAKE_BUILD_TYPE = "-DCMAKE_BUILD_TYPE=";
 
-	private static final Color black = new Color(Display.getCurrent(), 0, 0, 0);
-	private static final Color red = new Color(Display.getCurrent(), 255, 0, 0);
+	private static final String TOOLCHAIN_FILE = "-DCMAKE_TOOLCHAIN_FILE=";
+
+	/** Feeds the compile_commands.json language settings provider (Makefile and Ninja generators). */
+	private static final String EXPORT_COMPILE_COMMANDS = "-DCMAKE_EXPORT_COMPILE_COMMANDS=ON";
 
 	private static final CMakeLauncher launcher = new CMakeLauncher();
 	
@@ -85,267 +83,462 @@ public class CMakeLauncher {
 		return launcher;
 	}
 	
-	private String getArchBinDir() {
-		return PluginDataIO.getBinDirectory() + File.separator + "$ARCH$" + File.separator;
-	}
-	
-	private String getSetupBinDir() {
-		return "-H. -B" + getArchBinDir() + " -DCMAKE_TOOLCHAIN_FILE=\"$PATH_TO_TOOLCHAIN_FILE$\" -DCMAKE_ECLIPSE_MAKE_ARGUMENTS=\"-C " + getArchBinDir() + " $MAKE_ARGS$\"";
+	/** Computed once, the version of the running product does not change. */
+	private static String eclipseVersion;
+
+	private static boolean eclipseVersionRetrieved;
+
+	/** The module path preference and its value with the variables substituted. */
+	private static String modulePathPreference;
+
+	private static String modulePath;
+
+	private String getArchBinDir(String architecture) {
+		return PluginDataIO.getBinDirectory() + File.separator + architecture + File.separator;
 	}
 
-	private String getSetupBinDirNoToolchain() {
-		return "-H. -B" + getArchBinDir() + " -DCMAKE_ECLIPSE_MAKE_ARGUMENTS=\"-C " + getArchBinDir() + " $MAKE_ARGS$\"";
+	private static boolean isFileApiBackend() {
+		return Activator.BACKEND_FILE_API.equals(Activator.getBackend());
 	}
 	
+	/**
+	 * The argument vector of a cmake invocation. cmake is started directly,
+	 * without a shell, so the arguments need no quoting.
+	 */
 	private class CommandBuilder {
-		private StringBuilder sb = new StringBuilder();
+		private final List<String> arguments = new ArrayList<>();
 		
 		public CommandBuilder() {
 			if( Activator.getCMakePath().isEmpty()) {
-				sb.append("cmake");
+				arguments.add("cmake");
 			} else {
-				sb.append(Activator.getCMakePath());
+				arguments.add(Activator.getCMakePath());
 			}
 		}
 		
-		CommandBuilder append(String string) {
-			sb.append(' ').append(string);
+		CommandBuilder append(String... args) {
+			Collections.addAll(arguments, args);
 			return this;
 		}
-		
-		boolean execute(StringBuilder out, StringBuilder err) throws IOException {
-			Runtime runtime = Runtime.getRuntime();
 
-			final String cmdLine = sb.toString();
-			Process process = null;
-			if (Platform.getOS().equals(Platform.OS_WIN32)) {
-				process = runtime.exec(new String[]{"cmd", "/C", cmdLine}, null);
-			} else {
-				System.out.println(cmdLine);
-				process = runtime.exec(new String[]{"sh", "-c", cmdLine}, null);
-			}
-			
-			int exitVal = -1;
-			final StreamGobbler errordataReader = new StreamGobbler(process.getErrorStream());
-			final StreamGobbler outputdataReader = new StreamGobbler(process.getInputStream());
-			errordataReader.start();
-			outputdataReader.start();
-			try {
-				exitVal = process.waitFor();
-				errordataReader.join();
-				outputdataReader.join();
-			} catch (InterruptedException e) {
-				Activator.logError("Error executing cmake", e);
+		/**
+		 * Appends arguments the user entered as one line, e.g. in the preferences.
+		 */
+		CommandBuilder appendCommandLine(String commandLine) {
+			arguments.addAll(StringShellTokenizer.tokenizeToList(commandLine));
+			return this;
+		}
+
+		/**
+		 * @return the arguments as they would be typed in a shell
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (String argument : arguments) {
+				if (sb.length() > 0) {
+					sb.append(' ');
+				}
+				if (argument.isEmpty() || argument.indexOf(' ') >= 0 || argument.indexOf('\t') >= 0) {
+					sb.append('"').append(argument.replace("\"", "\\\"")).append('"');
+				} else {
+					sb.append(argument.replace("\"", "\\\""));
+				}
 			}
-			
-			out.append(outputdataReader.getOutput());
-			err.append(errordataReader.getOutput());
-			
-			return exitVal == 0;
+			return sb.toString();
 		}
 		
-		boolean execute(IProject project) throws IOException {
+		boolean execute(IProject project, File buildDirectory, CMakeConsole console) throws IOException {
 			File projectLocation = project.getLocation().makeAbsolute().toFile();
-			Runtime runtime = Runtime.getRuntime();
+			final String cmdLine = toString();
+
+			console.println(cmdLine);
+			CMakeConsoles.instance().show(console);
+
+			Process process = new ProcessBuilder(arguments).directory(projectLocation).start();
 			
-			final String cmdLine = sb.toString();
-			Process process = null;
-			if (Platform.getOS().equals(Platform.OS_WIN32)) {
-				process = runtime.exec(new String[]{"cmd", "/C", cmdLine}, null, projectLocation);
-			} else {
-				System.out.println(cmdLine);
-				process = runtime.exec(new String[]{"sh", "-c", cmdLine}, null, projectLocation);
-			}
+			// only the tail of the error output is retained for the error log
+			LineRingBuffer errorTail = new LineRingBuffer(Activator.getRetainedOutputLines());
+			CMakeProblemMarkers markers = new CMakeProblemMarkers(project);
+			List<OutputFilter> filters = OutputFilter.getConfigured();
+			int exitVal = waitFor(process, new FilteringLineConsumer(filters, console, console.getOutputStream(), CMakeConsole.OUTPUT_COLOR),
+					new TeeLineConsumer(new CMakeDiagnosticsParser(
+							new FilteringLineConsumer(filters, console, console.getErrorStream(), CMakeConsole.ERROR_COLOR), markers), errorTail));
+			markers.finish(exitVal == 0 ? getEvaluatedFiles(buildDirectory) : null);
 			
+			if (exitVal != 0) {
+				StringBuilder message = new StringBuilder();
+				message.append("cmake failed for ").append(project.getName()).append(" (exit code ").append(exitVal).append(")\n");
+				errorTail.appendTo(message);
+				Activator.logWarning(message.toString());
+			}
+			return exitVal == 0;
+		}
+
+		private int waitFor(Process process, LineConsumer out, LineConsumer err) {
 			int exitVal = -1;
-			final StreamGobbler errordataReader = new StreamGobbler(process.getErrorStream());
-			final StreamGobbler outputdataReader = new StreamGobbler(process.getInputStream());
-			errordataReader.start();
-			outputdataReader.start();
 			try {
-				exitVal = process.waitFor();
-				errordataReader.join();
-				outputdataReader.join();
+				exitVal = ProcessOutputPump.instance().waitFor(process, out, err);
 			} catch (InterruptedException e) {
 				Activator.logError("Error executing cmake", e);
 			}
-			
-			MessageConsole myConsole = Activator.findConsole("CMake Output");
-			myConsole.clearConsole();
-			final MessageConsoleStream out = myConsole.newMessageStream();
-			final MessageConsoleStream err = myConsole.newMessageStream();
-			
-			Display.getDefault().asyncExec(new Runnable() {
-				
-				@Override
-				public void run() {
-					out.setColor(black);
-					out.println(cmdLine);
-					out.println(outputdataReader.getOutput().toString());
-					String errorOut = errordataReader.getOutput().toString();
-					errorOut = filterErrorOutput(errorOut);
-					if(!errorOut.isEmpty()) {
-						err.setColor(red);
-						err.println(errorOut);
-					}
-				}
-			});
-			
-			Activator.showConsole("CMake Output");
-			
-			return exitVal == 0;
+			return exitVal;
 		}
 
 	}
 	
 	public void setupProject(final IProject project) {
-		WorkspaceJob job = new WorkspaceJob("Setup CMakeProject " + project) {
-			@Override
-			public IStatus runInWorkspace(IProgressMonitor monitor)
-					throws CoreException {
-				try {
-					doSetupProject(project, monitor);
-					checkDerivedResources(project, monitor);
-					return Status.OK_STATUS;
-				} catch (IOException e) {
-					e.printStackTrace();
-					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to setup Project " + e.getLocalizedMessage());
-				}
-			}
-		};
-		job.schedule();
+		CMakeProjectJob.submit(project, CMakeRequest.setup());
 	}
 
 	private void checkDerivedResources(IProject project, IProgressMonitor monitor) {
 		CMakeNature.assignDerivedToResources(project, monitor);
 	}
 
-	Pattern eclipseWarning = Pattern.compile("(.*)The build directory is a subdirectory.*which is a sibling of the source directory\\.(.*)", Pattern.DOTALL | Pattern.MULTILINE);
-	
-	public String filterErrorOutput(String errorOut) {
-		Matcher m = eclipseWarning.matcher(errorOut);
-		if (m.matches()) {
-			errorOut = m.replaceAll("$1$2");
-		} else {
-			System.err.println("does not match!");
-		}
-		errorOut = errorOut.trim();
-		// No content for warnings anymore? Leave empty!
-		if (errorOut.equals("CMake Warning in CMakeLists.txt:")) {
-			return "";
+	/**
+	 * Executes a (possibly merged) request. Called by the {@link CMakeProjectJob}
+	 * of the project, thus never in parallel for the same project.
+	 */
+	IStatus process(IProject project, CMakeRequest request, IProgressMonitor monitor) throws CoreException {
+		try {
+			boolean success = true;
+			if (request.isConfigure()) {
+				success = doConfigure(project, request, monitor);
+				checkDerivedResources(project, monitor);
+			} else if (request.isCopyProjectFiles()) {
+				copyProjectFiles(project, monitor);
+			}
+			if (request.isIntegrityCheck()) {
+				CMakeNature.checkIntegrity(project, monitor);
+			}
+			if (!success) {
+				// reported as warning, the details are already in the console
+				return new Status(IStatus.WARNING, Activator.PLUGIN_ID, "CMake failed for Project " + project.getName() + ", see its CMake console");
+			}
+			return Status.OK_STATUS;
+		} catch (IOException e) {
+			Activator.logError("Unable to configure " + project.getName(), e);
+			return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to configure Project " + e.getLocalizedMessage());
 		}
-		return errorOut;
 	}
 
+	private boolean doConfigure(IProject project, CMakeRequest request, IProgressMonitor monitor) throws CoreException, IOException {
+		String currentArchitecture = ProjectSettingsAccessor.retrieveToolchain(project);
+		String architecture = request.getArchitecture();
+		if (architecture == null) {
+			architecture = currentArchitecture;
+		}
+		String buildType = request.getBuildType();
+		if (buildType == null) {
+			buildType = ProjectSettingsAccessor.retrieveBuildType(project);
+		}
+		CMakeConsole console = CMakeConsoles.instance().get(project, architecture);
+		try {
+			return doConfigure(project, request, currentArchitecture, architecture, buildType, console, monitor);
+		} finally {
+			CMakeConsoles.instance().release(console);
+		}
+	}
 
-	private void doSetupProject(IProject project, IProgressMonitor monitor) throws CoreException, IOException {
+	private boolean doConfigure(IProject project, CMakeRequest request, String currentArchitecture, String architecture, String buildType,
+			CMakeConsole console, IProgressMonitor monitor) throws CoreException, IOException {
+		console.clear();
+		CMakeCapabilities capabilities = CMakeCapabilities.getOrProbe();
+		boolean fileApi = isFileApiBackend();
+		if (fileApi && !capabilities.isFileApiSupported()) {
+			console.println("cmake " + capabilities.getVersion() + " does not support the file API, using the Eclipse CDT4 generator.");
+			fileApi = false;
+		}
 		CommandBuilder builder = new CommandBuilder();
-		appendEclipseProjectSetup(builder);
-		appendArchitectureVariables(builder, ProjectSettingsAccessor.retrieveToolchain(project));
-		appendBuildTypeVariables(builder, ProjectSettingsAccessor.retrieveBuildType(project));
-		builder.append(Activator.getCmakeArgs());
-		builder.execute(project);
-		project.refreshLocal(IResource.DEPTH_INFINITE, monitor);
-		// now relink symbolic links
-		copyProjectFiles(project, monitor);
-		
-		ICProject cproject = CoreModel.getDefault().create(project);
-		CCorePlugin.getIndexManager().reindex(cproject);
-	}
-	
-	public void changeArchitecture(final IProject project, final String architecture) throws CoreException {
-		WorkspaceJob job = new WorkspaceJob("Change Architecture of CMakeProject " + project) {
-			@Override
-			public IStatus runInWorkspace(IProgressMonitor monitor)
-					throws CoreException {
-				try {
-					doChangeArchitecture(project, architecture, monitor);
-					checkDerivedResources(project, monitor);
-					return Status.OK_STATUS;
-				} catch (IOException e) {
-					e.printStackTrace();
-					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to change architecture of Project " + e.getLocalizedMessage());
+		appendEclipseProjectSetup(builder, fileApi);
+		appendArchitectureVariables(builder, architecture, fileApi);
+		appendBuildTypeVariables(builder, buildType);
+		builder.append(EXPORT_COMPILE_COMMANDS);
+		builder.appendCommandLine(Activator.getCmakeArgs());
+
+		File buildDirectory = getBuildDirectory(project, architecture);
+		boolean queryWritten = fileApi && FileApi.writeQuery(buildDirectory);
+		String commandLine = builder.toString();
+		if (!queryWritten && ConfigureFingerprint.isUpToDate(buildDirectory, commandLine)) {
+			console.println("CMake configuration of " + project.getName() + " (" + architecture + ", " + buildType + ") is up to date.");
+			if (request.isCopyProjectFiles()) {
+				// the build tree is up to date, but may not be the one in use, or
+				// the project files were edited; copying compares the bytes first
+				if (fileApi) {
+					CMakeProjectModel before = FileApi.read(getBuildDirectory(project, currentArchitecture));
+					useProjectModel(project, architecture, before);
+				} else {
+					CProjectLanguageSettings settings = readLanguageSettings(project);
+					copyProjectFiles(project, architecture, monitor);
+					updateIndex(project, settings.diff(readLanguageSettings(project)));
 				}
 			}
-		};
-		job.schedule();
+			return true;
+		}
+		CMakeProjectModel before = fileApi ? FileApi.read(getBuildDirectory(project, currentArchitecture)) : null;
+		if (isGeneratorChanged(buildDirectory, fileApi)) {
+			// cmake refuses to reuse a build tree of another generator
+			if (capabilities.isFreshSupported()) {
+				builder.append("--fresh");
+			} else {
+				new File(buildDirectory, CMakeCache.CACHE_FILE).delete();
+				// the compiler checks of the old generator are kept here
+				deleteRecursively(new File(buildDirectory, "CMakeFiles"));
+			}
+		}
+
+		Timing timing = new Timing();
+		boolean success = builder.execute(project, buildDirectory, console);
+		timing.lap("cmake");
+		if (success) {
+			ConfigureFingerprint.store(buildDirectory, commandLine);
+		} else {
+			ConfigureFingerprint.invalidate(buildDirectory);
+		}
+		if (!request.isCopyProjectFiles()) {
+			// a changed build type does not affect the generated project files
+			return success;
+		}
+		int refreshed = refreshConfigureOutputs(project, buildDirectory, monitor);
+		timing.lap("refresh of " + refreshed + " resources");
+		if (fileApi) {
+			String indexUpdate = useProjectModel(project, architecture, before);
+			timing.lap(indexUpdate);
+		} else {
+			CProjectLanguageSettings settings = readLanguageSettings(project);
+			// now relink symbolic links
+			copyProjectFiles(project, architecture, monitor);
+			timing.lap("copy");
+
+			String indexUpdate = updateIndex(project, settings.diff(readLanguageSettings(project)));
+			timing.lap(indexUpdate);
+		}
+		// the refresh is an own modification, the resource listener ignores it
+		CompileCommandsLanguageSettingsProvider.databaseChanged(project);
+		console.println(timing.toString());
+		return success;
 	}
-	
-	private void doChangeArchitecture(IProject project, String architecture, IProgressMonitor monitor) throws CoreException, IOException {
-		CommandBuilder builder = new CommandBuilder();
-		appendEclipseProjectSetup(builder);
-		appendArchitectureVariables(builder, architecture);
-		appendBuildTypeVariables(builder, ProjectSettingsAccessor.retrieveBuildType(project));
-		builder.execute(project);
-		project.refreshLocal(IResource.DEPTH_INFINITE, monitor);
-		copyProjectFiles(project, architecture, monitor);
-		ProjectSettingsAccessor.removeAbsoluteProjectPath(project);
 
-		ICProject cproject = CoreModel.getDefault().create(project);
-		CCorePlugin.getIndexManager().reindex(cproject);
+	/**
+	 * @return the CMakeLists.txt and cmake files read by the last configure
+	 *         run, <code>null</code> if the generator does not report them
+	 */
+	private static List<File> getEvaluatedFiles(File buildDirectory) {
+		try {
+			MakefileCMake makefile = MakefileCMake.read(buildDirectory);
+			return makefile == null ? null : makefile.getFiles(MakefileCMake.DEPENDS);
+		} catch (IOException e) {
+			Activator.logWarning("Unable to read the configure inputs in " + buildDirectory, e);
+			return null;
+		}
 	}
-	
-	public void changeBuildType(final IProject project, final String buildType) throws CoreException {
-		WorkspaceJob job = new WorkspaceJob("Change Build-Type of CMakeProject " + project) {
-			@Override
-			public IStatus runInWorkspace(IProgressMonitor monitor)
-					throws CoreException {
-				try {
-					doChangeBuildType(project, buildType, monitor);
-					checkDerivedResources(project, monitor);
-					return Status.OK_STATUS;
-				} catch (IOException e) {
-					e.printStackTrace();
-					return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unable to change build type of Project " + e.getLocalizedMessage());
+
+	/**
+	 * Refreshes what a configure run can have touched: the generated project
+	 * files, the cache and the files cmake reports as generate byproducts.
+	 * @return the number of refreshed resources
+	 */
+	private int refreshConfigureOutputs(IProject project, File buildDirectory, IProgressMonitor monitor) throws CoreException, IOException {
+		ResourceRefresher refresher = new ResourceRefresher(project);
+		List<File> files = new ArrayList<>();
+		files.add(new File(buildDirectory, ".project"));
+		files.add(new File(buildDirectory, ".cproject"));
+		files.add(new File(buildDirectory, "CMakeCache.txt"));
+		files.add(new File(buildDirectory, CompileCommandsDatabase.FILE_NAME));
+
+		MakefileCMake makefile = MakefileCMake.read(buildDirectory);
+		if (makefile == null) {
+			// generator does not report its byproducts, fall back to the whole build tree
+			IResource buildFolder = refresher.toResource(buildDirectory, true);
+			if (buildFolder != null) {
+				refresher.refresh(buildFolder, IResource.DEPTH_INFINITE, monitor);
+			}
+		} else {
+			File cmakeFiles = new File(buildDirectory, "CMakeFiles");
+			for (File product : makefile.getFiles(MakefileCMake.PRODUCTS)) {
+				// cmake internals are of no interest to the workspace
+				if (!product.getPath().startsWith(cmakeFiles.getPath())) {
+					files.add(product);
 				}
 			}
-		};
-		job.schedule();
+		}
+		refresher.refresh(files, monitor);
+		return refresher.getRefreshedCount();
+	}
+
+	/**
+	 * Collects the duration of the steps of a configure run.
+	 */
+	private static class Timing {
+		private final StringBuilder sb = new StringBuilder("Timing:");
+		private long start = System.nanoTime();
+
+		void lap(String step) {
+			long now = System.nanoTime();
+			if (sb.length() > 7) {
+				sb.append(',');
+			}
+			sb.append(' ').append(step).append(' ').append((now - start) / 1000000).append(" ms");
+			start = now;
+		}
+
+		@Override
+		public String toString() {
+			return sb.toString();
+		}
+	}
+
+	private CProjectLanguageSettings readLanguageSettings(IProject project) {
+		return CProjectLanguageSettings.read(project.getFile(".cproject").getLocation().toFile());
+	}
+
+	/**
+	 * Makes the file API model of the architecture the one in use and
+	 * reindexes the sources whose compile settings differ from the previous
+	 * model.
+	 * @param before the model in use so far, <code>null</code> if unknown
+	 * @return a short description of the index update for the timing output
+	 */
+	private String useProjectModel(IProject project, String architecture, CMakeProjectModel before) {
+		File buildDirectory = getBuildDirectory(project, architecture);
+		CMakeProjectModel after = FileApi.read(buildDirectory);
+		if (after == null) {
+			Activator.logWarning("CMake did not answer the file API query for " + project.getName() + " (" + architecture + ")");
+		}
+		ProjectSettingsAccessor.storeToolchain(project, architecture);
+		ProjectModelLanguageSettingsProvider.setModel(project, after, buildDirectory);
+		CompileCommandsLanguageSettingsProvider.invalidate(project);
+		if (before == null) {
+			CCorePlugin.getIndexManager().reindex(CoreModel.getDefault().create(project));
+			return "reindex";
+		}
+		return updateIndex(project, before.diff(after));
 	}
+
+	/**
+	 * Reindexes only what is affected by a change of the language settings.
+	 * @return a short description of the index update for the timing output
+	 */
+	private String updateIndex(IProject project, CProjectLanguageSettings.Delta delta) {
+		ICProject cproject = CoreModel.getDefault().create(project);
+		if (delta.isGlobal()) {
+			CCorePlugin.getIndexManager().reindex(cproject);
+			return "reindex";
+		}
+		if (delta.isEmpty()) {
+			return "index unchanged";
+		}
+		List<ICElement> elements = new ArrayList<>(delta.getPaths().size());
+		for (String path : delta.getPaths()) {
+			IResource resource = project.findMember(path);
+			ICElement element = resource == null ? null : CoreModel.getDefault().create(resource);
+			if (element == null) {
+				// settings for a resource the model does not know, stay on the safe side
+				CCorePlugin.getIndexManager().reindex(cproject);
+				return "reindex";
+			}
+			elements.add(element);
+		}
+		try {
+			CCorePlugin.getIndexManager().update(elements.toArray(new ICElement[elements.size()]), IIndexManager.UPDATE_ALL);
+		} catch (CoreException e) {
+			Activator.logError("Unable to update index, reindexing " + project.getName(), e);
+			CCorePlugin.getIndexManager().reindex(cproject);
+			return "reindex";
+		}
+		return "index update of " + elements.size() + " resources";
+	}
+
+	private File getBuildDirectory(IProject project, String architecture) {
+		return PluginDataIO.getBuildDirectory(project, architecture);
+	}
+
 	
+	public void changeArchitecture(final IProject project, final String architecture) throws CoreException {
+		CMakeProjectJob.submit(project, CMakeRequest.changeArchitecture(architecture));
+	}
 	
-	private void doChangeBuildType(IProject project, String buildType, IProgressMonitor monitor) throws CoreException, IOException {
-		CommandBuilder builder = new CommandBuilder();
-		appendEclipseProjectSetup(builder);
-		appendArchitectureVariables(builder, ProjectSettingsAccessor.retrieveToolchain(project));
-		appendBuildTypeVariables(builder, buildType);
-		builder.execute(project);
+	public void changeBuildType(final IProject project, final String buildType) throws CoreException {
+		CMakeProjectJob.submit(project, CMakeRequest.changeBuildType(buildType));
 	}
 	
-	private void appendEclipseProjectSetup(CommandBuilder builder) {
-		String version = retrieveEclipseVersionString();
-		String modulePath = getModulePath();
-		
-		String parameter = batchReplace(GENERATE_ECLIPSE_PROJECT, new String[]{"BUILD_SYS", "VERSION"},
-				new String[]{Activator.getBuildSystemString(), version});
+	/**
+	 * @param fileApi whether the run uses the plain generator, without the
+	 *        eclipse extra generator
+	 * @return <code>true</code> if the build directory was configured with
+	 *         another generator or extra generator than the run will use
+	 */
+	private static boolean isGeneratorChanged(File buildDirectory, boolean fileApi) {
+		CMakeCache cache = CMakeCache.get(new File(buildDirectory, CMakeCache.CACHE_FILE));
+		String generator = cache.getValue(CMakeCache.CMAKE_GENERATOR);
+		if (generator == null) {
+			return false;
+		}
+		String selected = Activator.getBuildSystemString();
+		String extraGenerator = "";
+		if (selected.startsWith(ECLIPSE_GENERATOR_PREFIX)) {
+			selected = selected.substring(ECLIPSE_GENERATOR_PREFIX.length());
+			if (!fileApi) {
+				extraGenerator = ECLIPSE_EXTRA_GENERATOR;
+			}
+		}
+		String cachedExtraGenerator = cache.getValue(CMakeCache.CMAKE_EXTRA_GENERATOR);
+		return !generator.equals(selected) || !extraGenerator.equals(cachedExtraGenerator == null ? "" : cachedExtraGenerator);
+	}
 
-		builder.append(parameter);
-		
-		if (modulePath != null && !modulePath.isEmpty()) {
-			parameter = batchReplace(SETUP_MODULE_PATH, new String[] {"PATH_TO_MODULES"}, new String[] {modulePath});
-			builder.append(parameter);
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		if (file.exists() && !file.delete()) {
+			Activator.logWarning("Unable to delete " + file);
+		}
+	}
+
+	private void appendEclipseProjectSetup(CommandBuilder builder, boolean fileApi) {
+		if (fileApi) {
+			// the model is read from the file API replies, the plain generator suffices
+			String generator = Activator.getBuildSystemString();
+			if (generator.startsWith(ECLIPSE_GENERATOR_PREFIX)) {
+				generator = generator.substring(ECLIPSE_GENERATOR_PREFIX.length());
+			}
+			builder.append("-G", generator);
+		} else {
+			builder.append("-G", Activator.getBuildSystemString());
+			String version = getEclipseVersion();
+			if (version != null) {
+				builder.append(ECLIPSE_VERSION + version);
+			}
+			builder.append(ECLIPSE_NO_LINKED_RESOURCES);
+		}
+
+		String modulePath = getModulePath();
+		if (!modulePath.isEmpty()) {
+			builder.append(SETUP_MODULE_PATH + modulePath);
 		}
 	}
 	
-	private void appendArchitectureVariables(CommandBuilder builder, String architecture) {
+	private void appendArchitectureVariables(CommandBuilder builder, String architecture, boolean fileApi) {
 		if(PluginDataIO.getToolchainArchitectures().size() == 0) {
-			String parameter = batchReplace(getSetupBinDirNoToolchain(), new String[]{"ARCH", "MAKE_ARGS"}
-			, new String[]{architecture, Activator.getMakeArgs()});
-			builder.append(parameter);
+			builder.append("-H.", "-B" + getArchBinDir(architecture));
 		} else {
 			if(!isToolchainForArchitectureAvailable(architecture)) {
 				System.err.println("FIXME: toolchain for architecture NOT available! (" + architecture +")");
 				return; // FIXME: throw CoreException?
 			}
-			String parameter = batchReplace(getSetupBinDir(), new String[]{"ARCH", "PATH_TO_TOOLCHAIN_FILE", "MAKE_ARGS"},
-					new String[]{architecture, getToolchainFilePath(architecture), Activator.getMakeArgs()});
-			builder.append(parameter);
+			builder.append("-H.", "-B" + getArchBinDir(architecture), TOOLCHAIN_FILE + getToolchainFilePath(architecture));
+		}
+		if (!fileApi) {
+			// the make arguments only end up in the generated eclipse project
+			builder.append(ECLIPSE_MAKE_ARGUMENTS + "-C " + getArchBinDir(architecture) + " " + Activator.getMakeArgs());
 		}
 	}
 	
 	private void appendBuildTypeVariables(CommandBuilder builder, String buildType) {
-		String parameter = batchReplace(CMAKE_BUILD_TYPE, new String[]{"BUILDTYPE"}, new String[]{buildType});
-		builder.append(parameter);
+		builder.append(CMAKE_BUILD_TYPE + buildType);
 	}
 
 	public void copyProjectFiles(IProject project, IProgressMonitor monitor) {
@@ -353,15 +546,32 @@ public class CMakeLauncher {
 	}
 
 	
-	private String getModulePath() {
-		return PluginDataIO.getPathToModules().toString();
+	/**
+	 * @return the module path, variables are substituted again only if the
+	 *         preference changed
+	 */
+	private static synchronized String getModulePath() {
+		String preference = Activator.getDefault().getPreferenceStore().getString(Activator.PREF_STORE_MODULES_KEY);
+		if (!preference.equals(modulePathPreference)) {
+			modulePath = PluginDataIO.getPathToModules().toString();
+			modulePathPreference = preference;
+		}
+		return modulePath;
 	}
 
-	private String retrieveEclipseVersionString() {
+	private static synchronized String getEclipseVersion() {
+		if (!eclipseVersionRetrieved) {
+			eclipseVersion = retrieveEclipseVersionString();
+			eclipseVersionRetrieved = true;
+		}
+		return eclipseVersion;
+	}
+
+	private static String retrieveEclipseVersionString() {
 		String product = System.getProperty("eclipse.product");
 		IExtensionRegistry registry = Platform.getExtensionRegistry();
 		IExtensionPoint point = registry.getExtensionPoint("org.eclipse.core.runtime.products");
-		if (point != null) {
+		if (product != null && point != null) {
 			IExtension[] extensions = point.getExtensions();
 			for (IExtension ext : extensions) {
 				if (product.equals(ext.getUniqueIdentifier())) {
@@ -380,12 +590,16 @@ public class CMakeLauncher {
 	}
 
 	private void copyProjectFiles(IProject project, String architecture, IProgressMonitor monitor) {
-		IPath binDir = new Path(batchReplace(getArchBinDir(), new String[]{"ARCH"}, new String[]{architecture}));
+		IPath binDir = new Path(getArchBinDir(architecture));
 		String fileNamesToCopy[] = new String[] {
 				".project",
 				".cproject"
 		};
 		IFolder binDirFolder = project.getFolder(binDir);
+		ProjectSettingsAccessor.removeAbsoluteProjectPaths(project, binDirFolder, monitor);
+		// the architecture is taken from the name in the copied project file again
+		ProjectSettingsAccessor.storeToolchain(project, null);
+		ProjectModelLanguageSettingsProvider.clearModel(project);
 		
 		for (String fileName : fileNamesToCopy) {
 			IFile sourceFile = binDirFolder.getFile(fileName);
@@ -401,7 +615,7 @@ public class CMakeLauncher {
 				copyFile(sourceFile, destinationFile, monitor);
 			}
 		}
-		ProjectSettingsAccessor.removeAbsoluteProjectPath(project);
+		CompileCommandsLanguageSettingsProvider.invalidate(project);
 		// CMakeNature may have to be registered again after copy
 		CMakeNature.scheduleIntegrityCheck(project);
 	}
@@ -411,6 +625,7 @@ public class CMakeLauncher {
 			source.copy(destination.getFullPath(), true, monitor);
 			destination.refreshLocal(IResource.DEPTH_ZERO, monitor);
 			destination.setDerived(true, monitor);
+			ModificationJournal.instance().record(destination);
 		} catch (CoreException e) {
 			e.printStackTrace();
 		}
@@ -418,88 +633,23 @@ public class CMakeLauncher {
 
 	private void copyFileContent(IFile source, IFile destination, IProgressMonitor monitor) {
 		try {
-			CharSequence content = FileContentIO.readFileContent(source);
-			CharSequence contentOld = FileContentIO.readFileContent(destination);
-			if (!content.toString().equals(contentOld.toString())) {
-				// Replace content only in case the content differs
-				FileContentIO.writeFileContent(destination, content, monitor);
+			// replace the content only in case the bytes differ
+			FileContentIO.copyIfDifferent(source, destination, monitor);
+			if (!destination.isDerived()) {
+				destination.setDerived(true, monitor);
+				ModificationJournal.instance().record(destination);
 			}
-			destination.setDerived(true, monitor);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
-	private String batchReplace(String string, String[] expressions, String[] replacements) {
-		for(int i=0;i<expressions.length;i++) {
-			string = string.replace("$" + expressions[i] + "$", replacements[i]);
-		}
-		return string;
-	}
-
 	private boolean isToolchainForArchitectureAvailable(String architecture) {
-		File architectureToolchainFilePath = new File(getToolchainFilePath(architecture));
-		return architectureToolchainFilePath.exists();
+		return ToolchainCatalog.instance().isAvailable(architecture);
 	}
 
 	private String getToolchainFilePath(String architecture) {
 		return PluginDataIO.getToolchainPathForArchitecture(architecture).toString();
 	}
 
-
-	public List<String> retrieveCMakeGenerators() {
-		ArrayList<String> eclipseGenerators = new ArrayList<>();
-		CommandBuilder builder = new CommandBuilder();
-		builder.append("--help");
-		StringBuilder stdOut = new StringBuilder();
-		StringBuilder errOut = new StringBuilder();
-		try {
-			builder.execute(stdOut, errOut);
-			
-			StringBuilder buff = new StringBuilder();
-			boolean capture = false;
-			int leadingSpaces = -1;
-
-			for ( String line : stdOut.toString().split("\n") ) {
-				if (!capture) {
-					if ( line.startsWith("Generators") ) {
-						capture = true;
-					}
-					continue;
-				}
-				if (!line.matches("\\s+.*")) {
-					continue;
-				}
-				if ( leadingSpaces == -1 ) {
-					leadingSpaces = 0;
-					while( line.charAt(leadingSpaces) == ' ')
-					{
-						++leadingSpaces;
-					}
-				}
-				if ( line.length() > leadingSpaces && line.charAt(leadingSpaces + 1) != ' ' && buff.length() > 0) {
-					appendGenerator(eclipseGenerators, buff);
-				}
-				buff.append(line);
-			}
-			appendGenerator(eclipseGenerators, buff);
-
-		} catch (IOException e) {
-			// expect this to not happen
-		}
-		return eclipseGenerators;
-		
-	}
-	
-	private static Pattern eclipseGeneratorPattern = Pattern.compile("\\s*(Eclipse[^=]+)=.*");
-	
-	private static void appendGenerator(ArrayList<String> eclipseGenerators, StringBuilder buff) {
-		String mergedGeneratorLine = buff.toString().replaceAll("\\n\\r", "").trim();
-		Matcher m = eclipseGeneratorPattern.matcher(mergedGeneratorLine);
-		if ( m.matches() ) {
-			eclipseGenerators.add(m.group(1).trim());
-		}
-		buff.setLength(0);
-	}
-
-}
\ No newline at end of file
+}
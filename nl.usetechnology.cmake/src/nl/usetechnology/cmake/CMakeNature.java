@@ -18,6 +18,8 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import nl.usetechnology.cmake.event.ModificationJournal;
+
 public class CMakeNature implements IProjectNature {
 
 	public static final String ID = "nl.usetechnology.cmake.nature";
@@ -110,29 +112,33 @@ public class CMakeNature implements IProjectNature {
 	
 	private static List<String> derivedDirectories = Collections.unmodifiableList(Arrays.asList("bin", "build", "[Targets]", "[Subprojects]"));
 	
+	/**
+	 * @return true if a top level folder with this name is generated by the plugin or cmake
+	 */
+	public static boolean isDerivedDirectory(String name) {
+		return derivedDirectories.contains(name);
+	}
+	
 	public static void scheduleIntegrityCheck(final IProject project) {
-		
-		WorkspaceJob job = new WorkspaceJob("Check integrity of project " + project.getName()) {
-			@Override
-			public IStatus runInWorkspace(IProgressMonitor monitor)
-					throws CoreException {
-
-				try {
-					project.refreshLocal(IResource.DEPTH_ONE, null);
-					if(!project.hasNature(ID)) {
-						scheduleRegister(project);
-						return Status.OK_STATUS;
-					}
-					
-				} catch(CoreException e) {
-					Activator.logError("Unable to readout nature of project!", e);
-				}
-				
-				assignDerivedToResources(project, monitor);
-				return Status.OK_STATUS;
+		CMakeProjectJob.submit(project, CMakeRequest.integrityCheck());
+	}
+
+	/**
+	 * Registers the nature (if missing) and marks the generated folders as
+	 * derived. Runs within the {@link CMakeProjectJob} of the project.
+	 */
+	static void checkIntegrity(IProject project, IProgressMonitor monitor) {
+		try {
+			project.refreshLocal(IResource.DEPTH_ONE, null);
+			if(!project.hasNature(ID)) {
+				scheduleRegister(project);
+				return;
 			}
-		};
-		job.schedule();
+		} catch(CoreException e) {
+			Activator.logError("Unable to readout nature of project!", e);
+		}
+		
+		assignDerivedToResources(project, monitor);
 	}
 	
 	public static void assignDerivedToResources(IProject project, IProgressMonitor monitor) {
@@ -147,6 +153,7 @@ public class CMakeNature implements IProjectNature {
 		for (IResource resource : toBeDerived) {
 			try {
 				resource.setDerived(true, monitor);
+				ModificationJournal.instance().record(resource);
 			} catch (CoreException e) {
 				Activator.logError("Unable to set " + resource + " to derived!");
 			}
@@ -0,0 +1,103 @@
+package nl.usetechnology.cmake;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+/**
+ * There is exactly one job per project, so CMake work for the same project is
+ * never executed in parallel, while different projects are processed
+ * concurrently. Requests submitted while the job is waiting are merged into
+ * the pending request; requests submitted while it is running reschedule the
+ * job once it has finished.
+ */
+public class CMakeProjectJob extends WorkspaceJob {
+
+	public static final Object FAMILY = CMakeProjectJob.class;
+
+	private static final Map<IProject, CMakeProjectJob> jobs = new HashMap<>();
+
+	private final IProject project;
+
+	private CMakeRequest pending;
+
+	private CMakeProjectJob(IProject project) {
+		super("CMake " + project.getName());
+		this.project = project;
+		addJobChangeListener(new JobChangeAdapter() {
+			@Override
+			public void done(IJobChangeEvent event) {
+				if (event.getResult().getSeverity() == IStatus.CANCEL) {
+					// cancelled while waiting: release whoever waits for the request
+					CMakeRequest request = takePending();
+					if (request != null) {
+						request.notifyDone(CMakeProjectJob.this.project, event.getResult());
+					}
+				}
+			}
+		});
+	}
+
+	public static void submit(IProject project, CMakeRequest request) {
+		CMakeProjectJob job;
+		synchronized (jobs) {
+			job = jobs.get(project);
+			if (job == null) {
+				job = new CMakeProjectJob(project);
+				jobs.put(project, job);
+			}
+		}
+		job.enqueue(request);
+	}
+
+	private synchronized void enqueue(CMakeRequest request) {
+		if (pending == null) {
+			pending = request;
+		} else {
+			pending.merge(request);
+		}
+		// no effect while waiting, reschedules after completion while running
+		schedule();
+	}
+
+	private synchronized CMakeRequest takePending() {
+		CMakeRequest request = pending;
+		pending = null;
+		return request;
+	}
+
+	@Override
+	public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+		CMakeRequest request = takePending();
+		if (request == null) {
+			return Status.OK_STATUS;
+		}
+		IStatus status = new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Unexpected failure while processing " + project.getName());
+		try {
+			status = CMakeLauncher.instance().process(project, request, monitor);
+			return status;
+		} catch (CoreException e) {
+			status = e.getStatus();
+			throw e;
+		} finally {
+			request.notifyDone(project, status);
+		}
+	}
+
+	@Override
+	public boolean belongsTo(Object family) {
+		return family == FAMILY || project.equals(family);
+	}
+
+	public IProject getProject() {
+		return project;
+	}
+}
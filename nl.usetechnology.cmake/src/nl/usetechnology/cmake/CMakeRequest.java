@@ -0,0 +1,163 @@
+package nl.usetechnology.cmake;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IStatus;
+
+/**
+ * Describes the CMake work pending for a single project. Requests that arrive
+ * while an earlier one is still waiting are merged into it, so the last
+ * selected toolchain and build type win.
+ */
+public class CMakeRequest {
+
+	/**
+	 * Notified once the request (or the request it was merged into) has been
+	 * processed or was cancelled.
+	 */
+	public interface Callback {
+		void done(IProject project, IStatus status);
+	}
+
+	private boolean configure;
+	private boolean copyProjectFiles;
+	private boolean integrityCheck;
+	private String architecture;
+	private String buildType;
+	private List<Callback> callbacks;
+
+	private CMakeRequest() {
+	}
+
+	/**
+	 * Re-run cmake with the current toolchain and build type and take over
+	 * the generated project files.
+	 */
+	public static CMakeRequest setup() {
+		CMakeRequest request = new CMakeRequest();
+		request.configure = true;
+		request.copyProjectFiles = true;
+		return request;
+	}
+
+	public static CMakeRequest changeArchitecture(String architecture) {
+		CMakeRequest request = setup();
+		request.architecture = architecture;
+		return request;
+	}
+
+	public static CMakeRequest changeBuildType(String buildType) {
+		CMakeRequest request = new CMakeRequest();
+		request.configure = true;
+		request.buildType = buildType;
+		return request;
+	}
+
+	/**
+	 * Take over the project files generated by the last run, without running cmake.
+	 */
+	public static CMakeRequest copyProjectFiles() {
+		CMakeRequest request = new CMakeRequest();
+		request.copyProjectFiles = true;
+		return request;
+	}
+
+	public static CMakeRequest integrityCheck() {
+		CMakeRequest request = new CMakeRequest();
+		request.integrityCheck = true;
+		return request;
+	}
+
+	/**
+	 * Merges a later request into this one. Settings of the later request
+	 * supersede the ones of this request.
+	 * @param later the request scheduled after this one
+	 * @return this request
+	 */
+	CMakeRequest merge(CMakeRequest later) {
+		configure |= later.configure;
+		copyProjectFiles |= later.copyProjectFiles;
+		integrityCheck |= later.integrityCheck;
+		if (later.architecture != null) {
+			architecture = later.architecture;
+		}
+		if (later.buildType != null) {
+			buildType = later.buildType;
+		}
+		if (later.callbacks != null) {
+			for (Callback callback : later.callbacks) {
+				whenDone(callback);
+			}
+		}
+		return this;
+	}
+
+	public CMakeRequest whenDone(Callback callback) {
+		if (callbacks == null) {
+			callbacks = new ArrayList<>(1);
+		}
+		callbacks.add(callback);
+		return this;
+	}
+
+	void notifyDone(IProject project, IStatus status) {
+		if (callbacks == null) {
+			return;
+		}
+		for (Callback callback : callbacks) {
+			try {
+				callback.done(project, status);
+			} catch (RuntimeException e) {
+				Activator.logError("CMake request callback failed", e);
+			}
+		}
+	}
+
+	public boolean isConfigure() {
+		return configure;
+	}
+
+	public boolean isCopyProjectFiles() {
+		return copyProjectFiles;
+	}
+
+	public boolean isIntegrityCheck() {
+		return integrityCheck;
+	}
+
+	/**
+	 * @return the requested toolchain or <code>null</code> to keep the current one
+	 */
+	public String getArchitecture() {
+		return architecture;
+	}
+
+	/**
+	 * @return the requested build type or <code>null</code> to keep the current one
+	 */
+	public String getBuildType() {
+		return buildType;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		if (configure) {
+			sb.append(copyProjectFiles ? "setup" : "configure");
+		} else if (copyProjectFiles) {
+			sb.append("copy");
+		}
+		if (architecture != null) {
+			sb.append(" toolchain=").append(architecture);
+		}
+		if (buildType != null) {
+			sb.append(" buildtype=").append(buildType);
+		}
+		if (integrityCheck) {
+			sb.append(" integrity-check");
+		}
+		return sb.toString().trim();
+	}
+}
@@ -4,34 +4,319 @@ import java.io.File;
 import java.util.List;
 
 import org.eclipse.cdt.utils.Platform;
+import org.eclipse.jface.dialogs.IInputValidator;
 import org.eclipse.jface.dialogs.InputDialog;
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.ComboFieldEditor;
+import org.eclipse.jface.preference.FieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.IntegerFieldEditor;
 import org.eclipse.jface.preference.ListEditor;
 import org.eclipse.jface.preference.StringFieldEditor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Combo;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 
+import nl.usetechnology.cmake.console.OutputFilter;
 import nl.usetechnology.cmake.helper.PluginDataIO;
 
 public class CategoryPage extends FieldEditorPreferencePage implements
 		IWorkbenchPreferencePage {
 
-	private ComboFieldEditor buildEnvironmentEditor;
+	/**
+	 * Edits a list stored as a single string separated by {@link File#pathSeparator}.
+	 */
+	static class PathSeparatedListEditor extends ListEditor {
+
+		private final String dialogTitle;
+		private final String dialogMessage;
+
+		public PathSeparatedListEditor(String name, String labelText, String dialogTitle, String dialogMessage, Composite parent) {
+			super(name, labelText, parent);
+			this.dialogTitle = dialogTitle;
+			this.dialogMessage = dialogMessage;
+		}
+
+		@Override
+		protected String[] parseString(String stringList) {
+			return stringList.split(File.pathSeparator);
+		}
+		
+		@Override
+		protected String getNewInputObject() {
+			InputDialog dialog = new InputDialog(getShell(), dialogTitle, dialogMessage, "", null);
+			if (dialog.open() == InputDialog.OK) {
+				return dialog.getValue();
+			}
+			return null;
+		}
+		
+		@Override
+		protected String createList(String[] items) {
+			StringBuilder sb = new StringBuilder();
+			for (String string : items) {
+				sb.append(string).append(File.pathSeparator);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Edits the output filters, one per line; new filters are validated.
+	 */
+	static class OutputFilterListEditor extends ListEditor {
+
+		public OutputFilterListEditor(String name, String labelText, Composite parent) {
+			super(name, labelText, parent);
+		}
+
+		@Override
+		protected String[] parseString(String stringList) {
+			return stringList.isEmpty() ? new String[0] : stringList.split(Activator.OUTPUT_FILTER_SEPARATOR);
+		}
+
+		@Override
+		protected String getNewInputObject() {
+			InputDialog dialog = new InputDialog(getShell(), "New Output Filter",
+					"Enter <action>[:<color>] <regular expression>\nActions: drop, fold, recolor, highlight. Colors: #rrggbb, gray, red, green, blue, orange, ...",
+					"fold ", new IInputValidator() {
+						@Override
+						public String isValid(String newText) {
+							try {
+								OutputFilter.parse(newText);
+								return null;
+							} catch (IllegalArgumentException e) {
+								return e.getMessage();
+							}
+						}
+					});
+			if (dialog.open() == InputDialog.OK) {
+				return dialog.getValue();
+			}
+			return null;
+		}
+
+		@Override
+		protected String createList(String[] items) {
+			StringBuilder sb = new StringBuilder();
+			for (String string : items) {
+				if (sb.length() > 0) {
+					sb.append(Activator.OUTPUT_FILTER_SEPARATOR);
+				}
+				sb.append(string);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Shows how many lines each configured output filter matched so far.
+	 */
+	static class OutputFilterStatisticsEditor extends FieldEditor {
+
+		private Label label;
+
+		public OutputFilterStatisticsEditor(String labelText, Composite parent) {
+			init("", labelText);
+			createControl(parent);
+		}
+
+		@Override
+		protected void adjustForNumColumns(int numColumns) {
+			((GridData) label.getLayoutData()).horizontalSpan = Math.max(1, numColumns - 1);
+		}
+
+		@Override
+		protected void doFillIntoGrid(Composite parent, int numColumns) {
+			getLabelControl(parent);
+			label = new Label(parent, SWT.WRAP);
+			GridData gd = new GridData(GridData.FILL_HORIZONTAL);
+			gd.horizontalSpan = Math.max(1, numColumns - 1);
+			label.setLayoutData(gd);
+			update();
+		}
+
+		private void update() {
+			StringBuilder sb = new StringBuilder();
+			for (OutputFilter filter : OutputFilter.getConfigured()) {
+				sb.append(filter.getSpecification()).append(": ").append(filter.getConsumedCount()).append(" lines\n");
+			}
+			label.setText(sb.length() == 0 ? "No output filters" : sb.toString().trim());
+		}
+
+		@Override
+		protected void doLoad() {
+			update();
+		}
+
+		@Override
+		protected void doLoadDefault() {
+		}
+
+		@Override
+		protected void doStore() {
+			// after OK the counters belong to the stored filters
+		}
+
+		@Override
+		public int getNumberOfControls() {
+			return 2;
+		}
+	}
+
+	/**
+	 * A read-only combo whose entries can be replaced while the page is open.
+	 */
+	static class UpdatableComboFieldEditor extends FieldEditor {
+
+		private Combo combo;
+		private String[][] entryNamesAndValues;
+		private String value;
+
+		public UpdatableComboFieldEditor(String name, String labelText, String[][] entryNamesAndValues, Composite parent) {
+			this.entryNamesAndValues = entryNamesAndValues;
+			init(name, labelText);
+			createControl(parent);
+		}
+
+		/**
+		 * Replaces the entries, the selected value is kept.
+		 */
+		public void setEntries(String[][] entryNamesAndValues) {
+			this.entryNamesAndValues = entryNamesAndValues;
+			if (combo != null && !combo.isDisposed()) {
+				fillCombo();
+				select(value);
+			}
+		}
+
+		@Override
+		protected void adjustForNumColumns(int numColumns) {
+			if (numColumns > 1) {
+				((GridData) combo.getLayoutData()).horizontalSpan = numColumns - 1;
+			}
+		}
+
+		@Override
+		protected void doFillIntoGrid(Composite parent, int numColumns) {
+			getLabelControl(parent);
+			combo = new Combo(parent, SWT.READ_ONLY);
+			GridData gd = new GridData();
+			gd.horizontalSpan = Math.max(1, numColumns - 1);
+			gd.horizontalAlignment = GridData.FILL;
+			combo.setLayoutData(gd);
+			combo.setFont(parent.getFont());
+			fillCombo();
+			combo.addSelectionListener(new SelectionAdapter() {
+				@Override
+				public void widgetSelected(SelectionEvent e) {
+					String oldValue = value;
+					int index = combo.getSelectionIndex();
+					value = index < 0 ? null : entryNamesAndValues[index][1];
+					setPresentsDefaultValue(false);
+					fireValueChanged(VALUE, oldValue, value);
+				}
+			});
+		}
+
+		private void fillCombo() {
+			combo.removeAll();
+			for (String[] entry : entryNamesAndValues) {
+				combo.add(entry[0]);
+			}
+		}
+
+		private void select(String newValue) {
+			value = newValue;
+			for (int i = 0; i < entryNamesAndValues.length; i++) {
+				if (entryNamesAndValues[i][1].equals(newValue)) {
+					combo.select(i);
+					return;
+				}
+			}
+			if (entryNamesAndValues.length > 0) {
+				// the stored value is not offered (anymore)
+				value = entryNamesAndValues[0][1];
+				combo.select(0);
+			}
+		}
+
+		@Override
+		protected void doLoad() {
+			select(getPreferenceStore().getString(getPreferenceName()));
+		}
+
+		@Override
+		protected void doLoadDefault() {
+			select(getPreferenceStore().getDefaultString(getPreferenceName()));
+		}
+
+		@Override
+		protected void doStore() {
+			if (value == null) {
+				getPreferenceStore().setToDefault(getPreferenceName());
+			} else {
+				getPreferenceStore().setValue(getPreferenceName(), value);
+			}
+		}
+
+		@Override
+		public int getNumberOfControls() {
+			return 2;
+		}
+	}
+
+	private UpdatableComboFieldEditor buildEnvironmentEditor;
 	
 	private StringFieldEditor makeArgsEditor;
 
 	private StringFieldEditor cmakeArgsEditor;
 
 	private BooleanFieldEditor touchEditor;
+
+	private ComboFieldEditor touchModeEditor;
+
+	private ComboFieldEditor backendEditor;
+
+	private IntegerFieldEditor outputLinesEditor;
+
+	private IntegerFieldEditor quietWindowEditor;
+
+	private IntegerFieldEditor consoleCountEditor;
+
+	private IntegerFieldEditor consoleBudgetEditor;
 	
 	private ComboFieldEditor defaultToolchain;
 
 	private ListEditor defaultBuildtypes;
+
+	private ListEditor ignorePatterns;
+
+	private ListEditor outputFilters;
+
+	private OutputFilterStatisticsEditor outputFilterStatistics;
 	
-	private CMakeLauncher launcher = new CMakeLauncher();
+	private final CMakeCapabilities.Listener capabilitiesListener = new CMakeCapabilities.Listener() {
+		@Override
+		public void capabilitiesChanged(final CMakeCapabilities capabilities) {
+			Display.getDefault().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (buildEnvironmentEditor != null) {
+						buildEnvironmentEditor.setEntries(toGeneratorEntries(capabilities));
+					}
+				}
+			});
+		}
+	};
 
 	
 	public CategoryPage() {
@@ -47,18 +332,19 @@ public class CategoryPage extends FieldEditorPreferencePage implements
 
 	@Override
 	protected void createFieldEditors() {
-		List<String> cmakeGenerators = launcher.retrieveCMakeGenerators();
-		String[][] generators = new String[cmakeGenerators.size()][];
-		int i = 0;
-		for( String generator : cmakeGenerators ) {
-			String name = generator.replaceAll("[^-]+-(.*)", "$1").trim();
-			generators[i++] = new String[]{name,generator};
-		}
-		
-		buildEnvironmentEditor = new ComboFieldEditor("BUILD_SYS", "Build System", generators, getFieldEditorParent());
+		// running cmake --help takes a while, the generators are filled in when known
+		CMakeCapabilities.addListener(capabilitiesListener);
+		buildEnvironmentEditor = new UpdatableComboFieldEditor("BUILD_SYS", "Build System",
+				toGeneratorEntries(CMakeCapabilities.get()), getFieldEditorParent());
 		buildEnvironmentEditor.setPreferenceName(Activator.PREF_STORE_BUILD_SYS);
 		buildEnvironmentEditor.load();
 		
+		backendEditor = new ComboFieldEditor("BACKEND", "Project model", new String[][] {
+				{ "Eclipse CDT4 generator", Activator.BACKEND_ECLIPSE },
+				{ "CMake file API (cmake 3.14+)", Activator.BACKEND_FILE_API } }, getFieldEditorParent());
+		backendEditor.setPreferenceName(Activator.PREF_STORE_BACKEND);
+		backendEditor.load();
+		
 		makeArgsEditor = new StringFieldEditor("MAKE_ARGS", "Make/Ninja Args", getFieldEditorParent());
 		makeArgsEditor.setPreferenceName(Activator.PREF_STORE_MAKE_ARGS);
 		makeArgsEditor.load();
@@ -70,6 +356,32 @@ public class CategoryPage extends FieldEditorPreferencePage implements
 		touchEditor = new BooleanFieldEditor("CMAKE_TOUCH", "Touch CMakeLists.txt when files are added/removed", getFieldEditorParent());
 		touchEditor.setPreferenceName(Activator.PREF_STORE_TOUCH_ARGS);
 		touchEditor.load();
+
+		touchModeEditor = new ComboFieldEditor("CMAKE_TOUCH_MODE", "Touch method", new String[][] {
+				{ "Update modification time", Activator.TOUCH_MODE_TIMESTAMP },
+				{ "Rewrite file content", Activator.TOUCH_MODE_REWRITE } }, getFieldEditorParent());
+		touchModeEditor.setPreferenceName(Activator.PREF_STORE_TOUCH_MODE);
+		touchModeEditor.load();
+
+		outputLinesEditor = new IntegerFieldEditor("OUTPUT_LINES", "Retained output lines", getFieldEditorParent());
+		outputLinesEditor.setPreferenceName(Activator.PREF_STORE_OUTPUT_LINES);
+		outputLinesEditor.setValidRange(1, 1000000);
+		outputLinesEditor.load();
+
+		quietWindowEditor = new IntegerFieldEditor("EVENT_QUIET_WINDOW", "Delay after file changes (ms)", getFieldEditorParent());
+		quietWindowEditor.setPreferenceName(Activator.PREF_STORE_EVENT_QUIET_WINDOW);
+		quietWindowEditor.setValidRange(0, 60000);
+		quietWindowEditor.load();
+
+		consoleCountEditor = new IntegerFieldEditor("CONSOLE_COUNT", "Project consoles kept open", getFieldEditorParent());
+		consoleCountEditor.setPreferenceName(Activator.PREF_STORE_CONSOLE_COUNT);
+		consoleCountEditor.setValidRange(1, 100);
+		consoleCountEditor.load();
+
+		consoleBudgetEditor = new IntegerFieldEditor("CONSOLE_BUDGET", "Characters kept per console", getFieldEditorParent());
+		consoleBudgetEditor.setPreferenceName(Activator.PREF_STORE_CONSOLE_BUDGET);
+		consoleBudgetEditor.setValidRange(10000, 100000000);
+		consoleBudgetEditor.load();
 		
 		String[][] entryNamesAndValues = { { "Toolchain path invalid or not set.", Platform.getOSArch() } };
 		List<String> toolchains = PluginDataIO.getToolchainArchitectures();
@@ -85,47 +397,74 @@ public class CategoryPage extends FieldEditorPreferencePage implements
 		defaultToolchain.setPreferenceName(Activator.PREF_STORE_DEFAULT_TOOLCHAIN);
 		defaultToolchain.load();
 		
-		defaultBuildtypes = new ListEditor("DEF_BUILDTYPES", "Available Buildtypes", getFieldEditorParent()) {
-			
-			@Override
-			protected String[] parseString(String stringList) {
-				return stringList.split(File.pathSeparator);
-			}
-			
-			@Override
-			protected String getNewInputObject() {
-				InputDialog dialog = new InputDialog(getShell(), "New Buildconfiguration", "Enter the name of the Buildconfiguration to add", "", null);
-				if (dialog.open() == InputDialog.OK) {
-					return dialog.getValue();
-				}
-				return null;
-			}
-			
-			@Override
-			protected String createList(String[] items) {
-				StringBuilder sb = new StringBuilder();
-				for (String string : items) {
-					sb.append(string).append(File.pathSeparator);
-				}
-				return sb.toString();
-			}
-		};
+		defaultBuildtypes = new PathSeparatedListEditor("DEF_BUILDTYPES", "Available Buildtypes", "New Buildconfiguration",
+				"Enter the name of the Buildconfiguration to add", getFieldEditorParent());
 		defaultBuildtypes.setPreferenceName(Activator.PREF_STORE_BUILD_CONF);
 		defaultBuildtypes.load();
+
+		ignorePatterns = new PathSeparatedListEditor("IGNORE_PATTERNS", "Ignored when touching (name patterns)", "New Pattern",
+				"Enter a file or folder name pattern (* and ? are supported)", getFieldEditorParent());
+		ignorePatterns.setPreferenceName(Activator.PREF_STORE_IGNORE_PATTERNS);
+		ignorePatterns.load();
+
+		outputFilters = new OutputFilterListEditor("OUTPUT_FILTERS", "Output filters (first match applies)", getFieldEditorParent());
+		outputFilters.setPreferenceName(Activator.PREF_STORE_OUTPUT_FILTERS);
+		outputFilters.load();
+
+		outputFilterStatistics = new OutputFilterStatisticsEditor("Lines matched", getFieldEditorParent());
 		
 		addField(buildEnvironmentEditor);
+		addField(backendEditor);
 		addField(makeArgsEditor);
 		addField(cmakeArgsEditor);
 		addField(touchEditor);
+		addField(touchModeEditor);
+		addField(outputLinesEditor);
+		addField(quietWindowEditor);
+		addField(consoleCountEditor);
+		addField(consoleBudgetEditor);
 		addField(defaultToolchain);
 		addField(defaultBuildtypes);
+		addField(ignorePatterns);
+		addField(outputFilters);
+		addField(outputFilterStatistics);
 
 		buildEnvironmentEditor.setPropertyChangeListener(this);
+		backendEditor.setPropertyChangeListener(this);
 		makeArgsEditor.setPropertyChangeListener(this);
 		cmakeArgsEditor.setPropertyChangeListener(this);
 		touchEditor.setPropertyChangeListener(this);
+		touchModeEditor.setPropertyChangeListener(this);
+		outputLinesEditor.setPropertyChangeListener(this);
+		quietWindowEditor.setPropertyChangeListener(this);
+		consoleCountEditor.setPropertyChangeListener(this);
+		consoleBudgetEditor.setPropertyChangeListener(this);
 		defaultToolchain.setPropertyChangeListener(this);
 		defaultBuildtypes.setPropertyChangeListener(this);
+		ignorePatterns.setPropertyChangeListener(this);
+		outputFilters.setPropertyChangeListener(this);
+	}
+
+	private static String[][] toGeneratorEntries(CMakeCapabilities capabilities) {
+		if (capabilities == null || capabilities.getGenerators().isEmpty()) {
+			String current = Activator.getBuildSystemString();
+			String label = capabilities == null ? "Detecting cmake generators..." : "No eclipse generator found, check the cmake path";
+			return new String[][] { { label, current } };
+		}
+		List<String> cmakeGenerators = capabilities.getGenerators();
+		String[][] generators = new String[cmakeGenerators.size()][];
+		int i = 0;
+		for( String generator : cmakeGenerators ) {
+			String name = generator.replaceAll("[^-]+-(.*)", "$1").trim();
+			generators[i++] = new String[]{name,generator};
+		}
+		return generators;
+	}
+
+	@Override
+	public void dispose() {
+		CMakeCapabilities.removeListener(capabilitiesListener);
+		super.dispose();
 	}
 
 	@Override
@@ -1,29 +1,35 @@
 package nl.usetechnology.cmake;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.QualifiedName;
 
 import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.helper.ProjectFileRewriter;
 
 public class ProjectSettingsAccessor {
 
 	public static final Pattern projectNamePattern = Pattern.compile(".*<projectDescription>\\s*<name>([^@]+)@([^<]+).*", Pattern.MULTILINE | Pattern.DOTALL);
 
-	public static final Pattern replacePattern = Pattern.compile("(.*<key>org\\.eclipse\\.cdt\\.make\\.core\\.build\\.arguments</key>\\s*<value>)([^<]*)(.*)", Pattern.MULTILINE | Pattern.DOTALL);
-
-	public static final Pattern buildTypePattern = Pattern.compile("\\s*CMAKE_BUILD_TYPE:STRING=(.*)");
+	/** The architecture in use, when the project files are not generated by the eclipse generator. */
+	private static final QualifiedName ARCHITECTURE_PROPERTY = new QualifiedName(Activator.PLUGIN_ID, "architecture");
 
 	public static String retrieveToolchain(IProject project) {
+		try {
+			String architecture = project.getPersistentProperty(ARCHITECTURE_PROPERTY);
+			if(architecture != null) {
+				return architecture;
+			}
+		} catch (CoreException e) {
+			Activator.logError("Unable to read the architecture of " + project.getName(), e);
+		}
 		try {
 			String projectName = project.getDescription().getName();
 			int atIndex = projectName.indexOf('@');
@@ -47,6 +53,19 @@ public class ProjectSettingsAccessor {
 		return Activator.getDefaultToolchain();
 	}
 
+	/**
+	 * Records the architecture in use for the file API backend. The eclipse
+	 * backend keeps it in the name of the generated project instead and
+	 * clears it with <code>null</code>.
+	 */
+	public static void storeToolchain(IProject project, String architecture) {
+		try {
+			project.setPersistentProperty(ARCHITECTURE_PROPERTY, architecture);
+		} catch (CoreException e) {
+			Activator.logError("Unable to store the architecture of " + project.getName(), e);
+		}
+	}
+
 	public static IFile getFileFromProject(IProject project, String... entries) {
 		IContainer container = project;
 		for(int i=0;i<entries.length - 1;i++) {
@@ -56,25 +75,19 @@ public class ProjectSettingsAccessor {
 	}
 	
 	public static String retrieveBuildType(IProject project) {
+		return retrieveBuildType(project, retrieveToolchain(project));
+	}
+
+	public static String retrieveBuildType(IProject project, String architecture) {
 		List<String> validBuildTypes = PluginDataIO.getBuildTypes();
 		String buildType = validBuildTypes.get(0); // Initialize with "valid" type
 		
-		String architecture = retrieveToolchain(project);
-		IFile cacheFile = getFileFromProject(project, PluginDataIO.getBinDirectory(), architecture, "CMakeCache.txt");
-		try {
-			InputStream is = cacheFile.getContents(true);
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-			String line;
-			while((line = br.readLine()) != null) {
-				Matcher m = buildTypePattern.matcher(line);
-				if(m.matches()) {
-					buildType = m.group(1);
-					break;
-				}
-			}
-			br.close();
-		} catch (Exception e) {
-			Activator.logInfo("Unable to retrieve build type from file: " + e.getLocalizedMessage());
+		CMakeCache cache = CMakeCache.get(project, architecture);
+		String cachedBuildType = cache.getValue(CMakeCache.CMAKE_BUILD_TYPE);
+		if(cachedBuildType != null) {
+			buildType = cachedBuildType;
+		} else {
+			Activator.logInfo("Unable to retrieve build type of " + project.getName() + " (" + architecture + ")");
 		}
 		if(!validBuildTypes.contains(buildType))  {
 			Activator.logWarning(buildType + " is not a valid build type");
@@ -84,40 +97,25 @@ public class ProjectSettingsAccessor {
 	}
 
 	/**
-	 * This method exchanges the absolute paths to the project with the
-	 * project environment variable. This way the project file can safely be
-	 * checked in.
-	 * For all other references it tries to convert to workspace variables.
-	 * @param project
+	 * Replaces the absolute paths in the generated project files of the
+	 * binary directory, before they are copied to the project. This way the
+	 * project files can safely be checked in.
+	 * @see ProjectFileRewriter
 	 */
-	public static void removeAbsoluteProjectPath(IProject project) {
-		// It is not possible, to access all items within the .project file
-		// via the description accessor, thus we have to access the file directly.
-		IFile dotProjectFile = project.getFile(".project");
-		String absoluteProjectPath = project.getLocation().toOSString();
-		String absoluteWorkspacePath = project.getWorkspace().getRoot().getLocation().toOSString();
-		if(!dotProjectFile.exists()) {
+	public static void removeAbsoluteProjectPaths(IProject project, IFolder binDirectory, IProgressMonitor monitor) {
+		rewrite(binDirectory.getFile(".project"), ProjectFileRewriter.forProjectFile(project), monitor);
+		rewrite(binDirectory.getFile(".cproject"), ProjectFileRewriter.forCProjectFile(project), monitor);
+	}
+
+	private static void rewrite(IFile file, ProjectFileRewriter rewriter, IProgressMonitor monitor) {
+		if(!file.exists() || file.getLocation() == null) {
 			return; // nothing to do (file does not exist)
 		}
-		
 		try {
-			BufferedReader br = new BufferedReader(new InputStreamReader(dotProjectFile.getContents(true)));
-			StringBuilder sb = new StringBuilder();
-			String line;
-			while((line = br.readLine()) != null) {
-				line = line.replace(absoluteProjectPath, "${PROJECT_LOC}");
-				line = line.replace(absoluteWorkspacePath, "${WORKSPACE_LOC}");
-				sb.append(line).append('\n');
-			}
-			br.close();
-			
-			// now we have to replace the content of this file
-			dotProjectFile.setContents(new ByteArrayInputStream(sb.toString().getBytes()), IResource.NONE, null);
+			rewriter.rewrite(file, monitor);
 		} catch (Exception e) {
-			Activator.logInfo("Unable to modify .project file: " + e.getLocalizedMessage());
+			Activator.logInfo("Unable to modify " + file + ": " + e.getLocalizedMessage());
 		}
-
-
 	}
 	
 }
@@ -0,0 +1,109 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsole;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+/**
+ * The console of one project and toolchain with its streams. The streams are
+ * created once, so repeated runs do not add streams to the console.
+ */
+public class CMakeConsole {
+
+	public static final RGB OUTPUT_COLOR = new RGB(0, 0, 0);
+	public static final RGB ERROR_COLOR = new RGB(255, 0, 0);
+
+	/** Shared by all consoles, only accessed on the UI thread. */
+	private static final Map<RGB, Color> colors = new HashMap<>();
+
+	private final MessageConsole console;
+	private final MessageConsoleStream out;
+	private final MessageConsoleStream err;
+
+	/** Number of runs writing to the console, guarded by {@link CMakeConsoles}. */
+	int users;
+
+	/** Streams by color and font style, created on first use and kept for later runs. */
+	private final Map<String, MessageConsoleStream> styledStreams = new HashMap<>();
+
+	CMakeConsole(MessageConsole console) {
+		this.console = console;
+		out = console.newMessageStream();
+		err = console.newMessageStream();
+		Display.getDefault().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				// system colors need not be disposed
+				out.setColor(Display.getCurrent().getSystemColor(SWT.COLOR_BLACK));
+				err.setColor(Display.getCurrent().getSystemColor(SWT.COLOR_RED));
+			}
+		});
+	}
+
+	public MessageConsole getConsole() {
+		return console;
+	}
+
+	public MessageConsoleStream getOutputStream() {
+		return out;
+	}
+
+	public MessageConsoleStream getErrorStream() {
+		return err;
+	}
+
+	/**
+	 * @return the stream for lines in the color and font style
+	 */
+	public synchronized MessageConsoleStream getStyledStream(final RGB rgb, final int fontStyle) {
+		String key = rgb + "/" + fontStyle;
+		MessageConsoleStream styled = styledStreams.get(key);
+		if (styled == null) {
+			styled = console.newMessageStream();
+			final MessageConsoleStream newStream = styled;
+			Display.getDefault().asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					Color color = colors.get(rgb);
+					if (color == null) {
+						color = new Color(Display.getCurrent(), rgb);
+						colors.put(rgb, color);
+					}
+					newStream.setColor(color);
+					newStream.setFontStyle(fontStyle);
+				}
+			});
+			styledStreams.put(key, styled);
+		}
+		return styled;
+	}
+
+	/**
+	 * Queues a message behind the output written so far.
+	 */
+	public void println(String message) {
+		ConsoleWriter.instance().println(out, message);
+	}
+
+	/**
+	 * Removes the output of the previous run, including what is still queued.
+	 */
+	public void clear() {
+		ConsoleWriter.instance().flush();
+		console.clearConsole();
+	}
+
+	/**
+	 * @param budget the maximal number of characters kept, older output is trimmed
+	 */
+	void setBudget(int budget) {
+		console.setWaterMarks(budget * 4 / 5, budget);
+	}
+
+}
@@ -0,0 +1,104 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.ui.console.ConsolePlugin;
+import org.eclipse.ui.console.IConsole;
+import org.eclipse.ui.console.MessageConsole;
+
+import nl.usetechnology.cmake.Activator;
+
+/**
+ * One console per project and toolchain, so the output of concurrent runs
+ * does not interleave and a run clears only its own console. Consoles are
+ * created on first use; beyond the configured count the least recently used
+ * one is removed, unless a run still writes to it. Each console keeps a
+ * bounded number of characters.
+ */
+public class CMakeConsoles {
+
+	private static final CMakeConsoles instance = new CMakeConsoles();
+
+	/** In access order, the eldest entry is the least recently used. */
+	private final Map<String, CMakeConsole> consoles = new LinkedHashMap<>(16, 0.75f, true);
+
+	public static CMakeConsoles instance() {
+		return instance;
+	}
+
+	public static String getName(IProject project, String architecture) {
+		return "CMake Output - " + project.getName() + " [" + architecture + "]";
+	}
+
+	/**
+	 * @return the console for a run, to be passed to {@link #release(CMakeConsole)}
+	 *         when the run ends
+	 */
+	public CMakeConsole get(IProject project, String architecture) {
+		String name = getName(project, architecture);
+		List<IConsole> evicted;
+		CMakeConsole console;
+		synchronized (consoles) {
+			console = consoles.get(name);
+			// the user may have closed the console, findConsole then creates a new one
+			MessageConsole current = Activator.findConsole(name);
+			if (console == null || console.getConsole() != current) {
+				console = new CMakeConsole(current);
+				consoles.put(name, console);
+			}
+			console.setBudget(Activator.getConsoleBudget());
+			console.users++;
+			evicted = evict();
+		}
+		remove(evicted);
+		return console;
+	}
+
+	/**
+	 * Ends a run started with {@link #get(IProject, String)}; consoles kept
+	 * for it are removed now if there are too many.
+	 */
+	public void release(CMakeConsole console) {
+		List<IConsole> evicted;
+		synchronized (consoles) {
+			console.users--;
+			evicted = evict();
+		}
+		remove(evicted);
+	}
+
+	/**
+	 * Removes the least recently used consoles beyond the configured count,
+	 * skipping those in use (called with the lock held).
+	 * @return the removed consoles
+	 */
+	private List<IConsole> evict() {
+		List<IConsole> evicted = new ArrayList<>();
+		int max = Math.max(1, Activator.getMaxConsoles());
+		Iterator<CMakeConsole> it = consoles.values().iterator();
+		while (consoles.size() > max && it.hasNext()) {
+			CMakeConsole eldest = it.next();
+			if (eldest.users == 0) {
+				evicted.add(eldest.getConsole());
+				it.remove();
+			}
+		}
+		return evicted;
+	}
+
+	private static void remove(List<IConsole> evicted) {
+		if (!evicted.isEmpty()) {
+			ConsolePlugin.getDefault().getConsoleManager().removeConsoles(evicted.toArray(new IConsole[evicted.size()]));
+		}
+	}
+
+	public void show(CMakeConsole console) {
+		ConsolePlugin.getDefault().getConsoleManager().showConsoleView(console.getConsole());
+	}
+
+}
@@ -0,0 +1,117 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+/**
+ * Writes console output in batches. Lines are queued by the threads reading
+ * the process output and written by a job at most every
+ * {@link #REFRESH_INTERVAL} ms, so the console formats a few large chunks
+ * instead of many single lines. Consecutive lines for the same stream are
+ * merged into chunks of up to {@link #MAX_CHUNK_CHARS}, the order of lines
+ * across streams is kept.
+ * <p>
+ * If the console cannot keep up, the oldest queued chunks are dropped once
+ * more than {@link #MAX_PENDING_CHARS} are waiting. Each stream gets a note
+ * about how much of its own output was dropped.
+ */
+public class ConsoleWriter {
+
+	static final long REFRESH_INTERVAL = 100;
+
+	static final int MAX_PENDING_CHARS = 4 * 1024 * 1024;
+
+	/** Limits a chunk, so the oldest output can be dropped even if all of it goes to one stream. */
+	static final int MAX_CHUNK_CHARS = 64 * 1024;
+
+	private static class Chunk {
+		final MessageConsoleStream stream;
+		final StringBuilder text = new StringBuilder();
+
+		Chunk(MessageConsoleStream stream) {
+			this.stream = stream;
+		}
+	}
+
+	private static final ConsoleWriter instance = new ConsoleWriter();
+
+	private final Deque<Chunk> chunks = new ArrayDeque<>();
+	private int pendingChars = 0;
+	private final Map<MessageConsoleStream, Long> droppedChars = new HashMap<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final Object writeLock = new Object();
+
+	private final Job job = new Job("Writing CMake output") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			scheduled.set(false);
+			flush();
+			return Status.OK_STATUS;
+		}
+	};
+
+	private ConsoleWriter() {
+		job.setSystem(true);
+	}
+
+	public static ConsoleWriter instance() {
+		return instance;
+	}
+
+	public void println(MessageConsoleStream stream, String line) {
+		synchronized (chunks) {
+			Chunk last = chunks.peekLast();
+			if (last == null || last.stream != stream || last.text.length() >= MAX_CHUNK_CHARS) {
+				last = new Chunk(stream);
+				chunks.addLast(last);
+			}
+			last.text.append(line).append('\n');
+			pendingChars += line.length() + 1;
+			while (pendingChars > MAX_PENDING_CHARS && chunks.size() > 1) {
+				Chunk dropped = chunks.removeFirst();
+				pendingChars -= dropped.text.length();
+				Long count = droppedChars.get(dropped.stream);
+				droppedChars.put(dropped.stream, (count == null ? 0 : count) + dropped.text.length());
+			}
+		}
+		if (scheduled.compareAndSet(false, true)) {
+			job.schedule(REFRESH_INTERVAL);
+		}
+	}
+
+	/**
+	 * Writes everything queued so far.
+	 */
+	public void flush() {
+		// one writer at a time, or snapshots could overtake each other
+		synchronized (writeLock) {
+			Chunk[] pending;
+			Map<MessageConsoleStream, Long> dropped;
+			synchronized (chunks) {
+				pending = chunks.toArray(new Chunk[chunks.size()]);
+				chunks.clear();
+				pendingChars = 0;
+				dropped = droppedChars.isEmpty() ? Collections.<MessageConsoleStream, Long>emptyMap() : new HashMap<>(droppedChars);
+				droppedChars.clear();
+			}
+			// the streams may belong to different consoles
+			for (Map.Entry<MessageConsoleStream, Long> entry : dropped.entrySet()) {
+				entry.getKey().println("[... " + entry.getValue() + " characters of output dropped ...]");
+			}
+			for (Chunk chunk : pending) {
+				chunk.stream.print(chunk.text.toString());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.ui.console.MessageConsoleStream;
+
+/**
+ * Prints every line to a console stream after passing it through the
+ * {@link OutputFilter}s; the first matching filter decides. The lines are
+ * written by the {@link ConsoleWriter}, styled lines to the streams the
+ * {@link CMakeConsole} keeps per style. The only state is the fold in progress.
+ */
+public class FilteringLineConsumer implements LineConsumer {
+
+	private final List<OutputFilter> filters;
+	private final CMakeConsole console;
+	private final MessageConsoleStream stream;
+	private final RGB streamColor;
+
+	private final ConsoleWriter writer = ConsoleWriter.instance();
+
+	private OutputFilter folding;
+	private int folded;
+
+	/**
+	 * @param stream the stream for unfiltered lines
+	 * @param streamColor the color of that stream, kept by highlighted lines without a color
+	 */
+	public FilteringLineConsumer(List<OutputFilter> filters, CMakeConsole console, MessageConsoleStream stream, RGB streamColor) {
+		this.filters = filters;
+		this.console = console;
+		this.stream = stream;
+		this.streamColor = streamColor;
+	}
+
+	@Override
+	public void accept(String line) {
+		OutputFilter filter = findFilter(line);
+		if (filter != null && filter == folding) {
+			filter.consumed();
+			folded++;
+			return;
+		}
+		endFold();
+		if (filter == null) {
+			writer.println(stream, line);
+			return;
+		}
+		filter.consumed();
+		switch (filter.getAction()) {
+		case DROP:
+			break;
+		case FOLD:
+			writer.println(stream, line);
+			folding = filter;
+			break;
+		case RECOLOR:
+			writer.println(console.getStyledStream(filter.getColor(), SWT.NORMAL), line);
+			break;
+		case HIGHLIGHT:
+			writer.println(console.getStyledStream(filter.getColor() == null ? streamColor : filter.getColor(), SWT.BOLD), line);
+			break;
+		}
+	}
+
+	private OutputFilter findFilter(String line) {
+		for (OutputFilter filter : filters) {
+			if (filter.matches(line)) {
+				return filter;
+			}
+		}
+		return null;
+	}
+
+	private void endFold() {
+		if (folded > 0) {
+			writer.println(stream, "    [... " + folded + (folded == 1 ? " similar line" : " similar lines") + "]");
+		}
+		folding = null;
+		folded = 0;
+	}
+
+	@Override
+	public void close() {
+		endFold();
+	}
+
+}
@@ -0,0 +1,19 @@
+package nl.usetechnology.cmake.console;
+
+/**
+ * Receives the output of a process line by line, while the process is still
+ * running.
+ */
+public interface LineConsumer {
+
+	/**
+	 * @param line a single line without the line terminator
+	 */
+	void accept(String line);
+
+	/**
+	 * Called once the stream has been read completely.
+	 */
+	void close();
+
+}
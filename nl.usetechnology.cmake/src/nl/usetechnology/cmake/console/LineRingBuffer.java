@@ -0,0 +1,69 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retains the last <code>capacity</code> lines of an output stream. Older
+ * lines are dropped, so memory stays bounded no matter how much output a
+ * process produces.
+ */
+public class LineRingBuffer implements LineConsumer {
+
+	private final String[] lines;
+	private int next = 0;
+	private long count = 0;
+
+	public LineRingBuffer(int capacity) {
+		lines = new String[Math.max(1, capacity)];
+	}
+
+	@Override
+	public synchronized void accept(String line) {
+		lines[next] = line;
+		next = (next + 1) % lines.length;
+		count++;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * @return the total number of lines seen, including the dropped ones
+	 */
+	public synchronized long getLineCount() {
+		return count;
+	}
+
+	public synchronized long getDroppedLineCount() {
+		return Math.max(0, count - lines.length);
+	}
+
+	/**
+	 * @return the retained lines, oldest first
+	 */
+	public synchronized List<String> getLines() {
+		int size = (int) Math.min(count, lines.length);
+		List<String> result = new ArrayList<>(size);
+		int start = (next - size + lines.length) % lines.length;
+		for (int i = 0; i < size; i++) {
+			result.add(lines[(start + i) % lines.length]);
+		}
+		return result;
+	}
+
+	/**
+	 * Appends the retained lines to the given buffer.
+	 */
+	public void appendTo(StringBuilder sb) {
+		long dropped = getDroppedLineCount();
+		if (dropped > 0) {
+			sb.append("[... ").append(dropped).append(" lines omitted ...]\n");
+		}
+		for (String line : getLines()) {
+			sb.append(line).append('\n');
+		}
+	}
+
+}
@@ -0,0 +1,175 @@
+package nl.usetechnology.cmake.console;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.swt.graphics.RGB;
+
+import nl.usetechnology.cmake.Activator;
+
+/**
+ * A filter of the cmake output, configured as
+ * <code>&lt;action&gt;[:&lt;color&gt;] &lt;regular expression&gt;</code>, e.g.
+ * <code>recolor:#808080 ^-- </code>. The expression is searched in each line.
+ * <ul>
+ * <li><code>drop</code> removes the line</li>
+ * <li><code>fold</code> shows the first of consecutive matching lines and the number of the others</li>
+ * <li><code>recolor</code> prints the line in the given color</li>
+ * <li><code>highlight</code> prints the line in bold, optionally in the given color</li>
+ * </ul>
+ * Filters are shared by all runs, so their counters accumulate.
+ */
+public class OutputFilter {
+
+	public enum Action {
+		DROP, FOLD, RECOLOR, HIGHLIGHT
+	}
+
+	private static final Map<String, RGB> NAMED_COLORS = new HashMap<>();
+
+	static {
+		NAMED_COLORS.put("black", new RGB(0, 0, 0));
+		NAMED_COLORS.put("gray", new RGB(128, 128, 128));
+		NAMED_COLORS.put("red", new RGB(255, 0, 0));
+		NAMED_COLORS.put("green", new RGB(0, 128, 0));
+		NAMED_COLORS.put("blue", new RGB(0, 0, 255));
+		NAMED_COLORS.put("orange", new RGB(255, 128, 0));
+		NAMED_COLORS.put("magenta", new RGB(192, 0, 192));
+	}
+
+	/** The filters by specification, parsed once. */
+	private static final Map<String, OutputFilter> filters = new HashMap<>();
+
+	private static String configuration;
+
+	private static List<OutputFilter> configured = Collections.emptyList();
+
+	private final String specification;
+	private final Action action;
+	private final RGB color;
+	private final Pattern pattern;
+	private final AtomicLong consumed = new AtomicLong();
+
+	private OutputFilter(String specification, Action action, RGB color, Pattern pattern) {
+		this.specification = specification;
+		this.action = action;
+		this.color = color;
+		this.pattern = pattern;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the specification is invalid, the
+	 *         message describes the problem
+	 */
+	public static OutputFilter parse(String specification) {
+		int space = specification.indexOf(' ');
+		if (space < 0 || space == specification.length() - 1) {
+			throw new IllegalArgumentException("Expected <action>[:<color>] <regular expression>");
+		}
+		String head = specification.substring(0, space);
+		String actionName = head;
+		RGB color = null;
+		int colon = head.indexOf(':');
+		if (colon >= 0) {
+			actionName = head.substring(0, colon);
+			color = parseColor(head.substring(colon + 1));
+		}
+		Action action;
+		try {
+			action = Action.valueOf(actionName.toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown action '" + actionName + "', use drop, fold, recolor or highlight");
+		}
+		if (action == Action.RECOLOR && color == null) {
+			throw new IllegalArgumentException("recolor needs a color, e.g. recolor:gray or recolor:#808080");
+		}
+		try {
+			return new OutputFilter(specification, action, color, Pattern.compile(specification.substring(space + 1)));
+		} catch (PatternSyntaxException e) {
+			throw new IllegalArgumentException(e.getDescription());
+		}
+	}
+
+	private static RGB parseColor(String text) {
+		RGB named = NAMED_COLORS.get(text.toLowerCase(Locale.ENGLISH));
+		if (named != null) {
+			return named;
+		}
+		if (text.matches("#[0-9a-fA-F]{6}")) {
+			int rgb = Integer.parseInt(text.substring(1), 16);
+			return new RGB((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff);
+		}
+		throw new IllegalArgumentException("Unknown color '" + text + "', use #rrggbb or one of " + NAMED_COLORS.keySet());
+	}
+
+	/**
+	 * @return the filters of the preferences in their order, invalid ones are
+	 *         skipped; parsed again only when the preference changed
+	 */
+	public static synchronized List<OutputFilter> getConfigured() {
+		String current = Activator.getOutputFilters();
+		if (current.equals(configuration)) {
+			return configured;
+		}
+		List<OutputFilter> result = new ArrayList<>();
+		for (String specification : current.split(Activator.OUTPUT_FILTER_SEPARATOR)) {
+			if (specification.trim().isEmpty()) {
+				continue;
+			}
+			OutputFilter filter = filters.get(specification);
+			if (filter == null) {
+				try {
+					filter = parse(specification);
+				} catch (IllegalArgumentException e) {
+					Activator.logWarning("Ignoring output filter '" + specification + "': " + e.getMessage());
+					continue;
+				}
+				filters.put(specification, filter);
+			}
+			result.add(filter);
+		}
+		// forget the counters of removed filters
+		filters.values().retainAll(result);
+		configuration = current;
+		configured = Collections.unmodifiableList(result);
+		return configured;
+	}
+
+	public boolean matches(String line) {
+		return pattern.matcher(line).find();
+	}
+
+	void consumed() {
+		consumed.incrementAndGet();
+	}
+
+	/**
+	 * @return the number of lines this filter matched since startup
+	 */
+	public long getConsumedCount() {
+		return consumed.get();
+	}
+
+	public String getSpecification() {
+		return specification;
+	}
+
+	public Action getAction() {
+		return action;
+	}
+
+	/**
+	 * @return the color or <code>null</code> to keep the color of the stream
+	 */
+	public RGB getColor() {
+		return color;
+	}
+
+}
@@ -0,0 +1,28 @@
+package nl.usetechnology.cmake.console;
+
+/**
+ * Forwards every line to several consumers.
+ */
+public class TeeLineConsumer implements LineConsumer {
+
+	private final LineConsumer[] consumers;
+
+	public TeeLineConsumer(LineConsumer... consumers) {
+		this.consumers = consumers;
+	}
+
+	@Override
+	public void accept(String line) {
+		for (LineConsumer consumer : consumers) {
+			consumer.accept(line);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (LineConsumer consumer : consumers) {
+			consumer.close();
+		}
+	}
+
+}
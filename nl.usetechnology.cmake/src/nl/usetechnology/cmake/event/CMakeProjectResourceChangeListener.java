@@ -9,21 +9,102 @@ import nl.usetechnology.cmake.Activator;
 
 public class CMakeProjectResourceChangeListener implements IResourceChangeListener {
 
-	private int counter = 0;
-	
+	/** Interval between two statistics entries in the log. */
+	private static final long STATISTICS_LOG_INTERVAL = 10 * 60 * 1000;
+
+	/**
+	 * The cost of visiting the deltas handed to this listener.
+	 */
+	public static class Statistics {
+		private final long deltaCount;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long visitedCount;
+		private final long suppressedCount;
+
+		Statistics(long deltaCount, long totalNanos, long maxNanos, long visitedCount, long suppressedCount) {
+			this.deltaCount = deltaCount;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.visitedCount = visitedCount;
+			this.suppressedCount = suppressedCount;
+		}
+
+		public long getDeltaCount() {
+			return deltaCount;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getVisitedCount() {
+			return visitedCount;
+		}
+
+		/**
+		 * @return the number of file deltas skipped, because the plugin caused them
+		 */
+		public long getSuppressedCount() {
+			return suppressedCount;
+		}
+
+		@Override
+		public String toString() {
+			long average = deltaCount == 0 ? 0 : totalNanos / deltaCount;
+			return deltaCount + " deltas, " + visitedCount + " nodes visited, avg " + average / 1000 + "us, max "
+					+ maxNanos / 1000 + "us, " + suppressedCount + " own modifications skipped";
+		}
+	}
+
+	private final CMakeResourceDeltaVisitor visitor = new CMakeResourceDeltaVisitor();
+
+	private long deltaCount;
+	private long totalNanos;
+	private long maxNanos;
+	private long visitedCount;
+	private long lastLogTime = System.currentTimeMillis();
+
 	@Override
 	public void resourceChanged(IResourceChangeEvent event) {
 		IResourceDelta delta = event.getDelta();
-		Activator.logInfo("(" + counter + ") resourceChanged called ");
-		counter += 1;
-		
+		if (delta == null) {
+			return;
+		}
+
+		// notifications are serialized by the workspace, so the visitor can be reused
+		long start = System.nanoTime();
 		try {
-			ResourcesChangedVisitor visitor = new ResourcesChangedVisitor();
+			visitor.reset();
 			delta.accept(visitor);
-			visitor.postProcess();
+			// the actual work is done later, once the burst of events is over
+			ResourceChangeProcessor.instance().add(visitor.getRecords());
 		} catch (CoreException e) {
-			e.printStackTrace();
+			Activator.logError("Unable to process resource delta", e);
 		}
+		record(System.nanoTime() - start, visitor.getVisitedCount());
+	}
+
+	private synchronized void record(long nanos, int visited) {
+		deltaCount++;
+		totalNanos += nanos;
+		maxNanos = Math.max(maxNanos, nanos);
+		visitedCount += visited;
+
+		long now = System.currentTimeMillis();
+		if (now - lastLogTime >= STATISTICS_LOG_INTERVAL) {
+			lastLogTime = now;
+			Activator.logInfo("Resource deltas: " + getStatistics());
+		}
+	}
+
+	public synchronized Statistics getStatistics() {
+		return new Statistics(deltaCount, totalNanos, maxNanos, visitedCount,
+				ModificationJournal.instance().getSuppressedCount());
 	}
 
 }
@@ -0,0 +1,210 @@
+package nl.usetechnology.cmake.event;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.CoreException;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.CMakeNature;
+import nl.usetechnology.cmake.helper.CMakeGlobIndex;
+import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.settings.CompileCommandsDatabase;
+
+/**
+ * Collects the work for a resource delta in a single pass. Subtrees that can
+ * never contribute (non CMake projects, generated folders, derived and ignored
+ * resources) are pruned instead of being walked. An instance is reused for
+ * every event; call {@link #reset()} before visiting a new delta.
+ */
+public class CMakeResourceDeltaVisitor extends AbstractCMakeResourceDeltaVisitor {
+
+	private static final int PROJECT_FILE_FLAGS = IResourceDelta.CONTENT | IResourceDelta.REPLACED;
+
+	private final Map<IProject, ProjectChangeRecord> records = new HashMap<>();
+
+	private final ModificationJournal journal = ModificationJournal.instance();
+
+	private String binDirectory;
+	private boolean touchEnabled;
+	private String ignorePatternSource;
+	private Pattern ignorePattern;
+	private int visitedCount;
+
+	/**
+	 * Clears the collected records and picks up the current preferences.
+	 */
+	public void reset() {
+		records.clear();
+		visitedCount = 0;
+		binDirectory = PluginDataIO.getBinDirectory();
+		touchEnabled = PluginDataIO.isTouchFilesEnabled();
+		String patterns = Activator.getIgnorePatterns();
+		if (ignorePattern == null || !patterns.equals(ignorePatternSource)) {
+			ignorePattern = compile(patterns);
+			ignorePatternSource = patterns;
+		}
+	}
+
+	@Override
+	public boolean visit(IResourceDelta delta) throws CoreException {
+		visitedCount++;
+		IResource resource = delta.getResource();
+		switch (resource.getType()) {
+		case IResource.ROOT:
+			return true;
+		case IResource.PROJECT:
+			return CMakeNature.isCMakeProject((IProject)resource);
+		case IResource.FOLDER:
+			return visitFolder(resource);
+		case IResource.FILE:
+			visitFile(delta, (IFile)resource);
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	private boolean visitFolder(IResource folder) {
+		IResource parent = folder.getParent();
+		if (isProject(parent)) {
+			if (folder.getName().equals(binDirectory)) {
+				return true;
+			}
+			if (CMakeNature.isDerivedDirectory(folder.getName())) {
+				return false;
+			}
+		} else if (isBinDirectory(parent)) {
+			// the architecture folders, only their project files are of interest
+			return true;
+		} else if (isInBinDirectory(parent)) {
+			return false;
+		}
+		// CMakeLists.txt changes are needed for the glob index, even without touching
+		return !folder.isDerived() && !isIgnored(folder);
+	}
+
+	private void visitFile(IResourceDelta delta, IFile file) {
+		if (delta.getKind() != IResourceDelta.REMOVED && journal.isOwnModification(file)) {
+			return;
+		}
+		IResource parent = file.getParent();
+		if (isProjectFile(file)) {
+			if (isInBinDirectory(parent) && (delta.getFlags() & PROJECT_FILE_FLAGS) != 0) {
+				getRecord(file.getProject()).copyProjectFiles();
+			}
+			return;
+		}
+		if (CompileCommandsDatabase.FILE_NAME.equals(file.getName()) && isInBinDirectory(parent)) {
+			// also written when a build runs cmake by itself
+			getRecord(file.getProject()).compileCommandsChanged();
+			return;
+		}
+		if (isInBinDirectory(parent) || isBinDirectory(parent)) {
+			return;
+		}
+		if (CMakeGlobIndex.isScanned(file.getName())) {
+			// the globs may have changed
+			CMakeGlobIndex.invalidate(file.getProject());
+		}
+		if (!touchEnabled) {
+			return;
+		}
+		if ((delta.getKind() & (IResourceDelta.ADDED | IResourceDelta.REMOVED)) == 0) {
+			return;
+		}
+		if (file.isDerived() || isIgnored(file)) {
+			return;
+		}
+		// which CMakeLists.txt has to be touched is decided later, using the globs
+		getRecord(file.getProject()).changed(file.getProjectRelativePath());
+	}
+
+	private static boolean isProjectFile(IFile file) {
+		return ".project".equals(file.getName()) || ".cproject".equals(file.getName());
+	}
+
+	private boolean isBinDirectory(IResource resource) {
+		return resource.getType() == IResource.FOLDER && isProject(resource.getParent())
+				&& resource.getName().equals(binDirectory);
+	}
+
+	/**
+	 * @return true for the architecture folders directly below the binary directory
+	 */
+	private boolean isInBinDirectory(IResource resource) {
+		return resource.getType() == IResource.FOLDER && isBinDirectory(resource.getParent());
+	}
+
+	private boolean isIgnored(IResource resource) {
+		return ignorePattern.matcher(resource.getName()).matches();
+	}
+
+	private ProjectChangeRecord getRecord(IProject project) {
+		ProjectChangeRecord record = records.get(project);
+		if (record == null) {
+			record = new ProjectChangeRecord(project);
+			records.put(project, record);
+		}
+		return record;
+	}
+
+	/**
+	 * @return the work required by the visited delta, one record per project
+	 */
+	public Collection<ProjectChangeRecord> getRecords() {
+		return records.values();
+	}
+
+	/**
+	 * @return the number of delta nodes visited since the last {@link #reset()}
+	 */
+	public int getVisitedCount() {
+		return visitedCount;
+	}
+
+	/**
+	 * Compiles a {@link File#pathSeparator} separated list of name patterns
+	 * using * and ? wildcards into a single regular expression.
+	 */
+	static Pattern compile(String patterns) {
+		StringBuilder regex = new StringBuilder();
+		for (String glob : patterns.split(File.pathSeparator)) {
+			glob = glob.trim();
+			if (glob.isEmpty()) {
+				continue;
+			}
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			StringBuilder literal = new StringBuilder();
+			for (char c : glob.toCharArray()) {
+				if (c == '*' || c == '?') {
+					if (literal.length() > 0) {
+						regex.append(Pattern.quote(literal.toString()));
+						literal.setLength(0);
+					}
+					regex.append(c == '*' ? ".*" : ".");
+				} else {
+					literal.append(c);
+				}
+			}
+			if (literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+			}
+		}
+		if (regex.length() == 0) {
+			// matches nothing
+			return Pattern.compile("(?!)");
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+}
@@ -0,0 +1,89 @@
+package nl.usetechnology.cmake.event;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Remembers the resources the plugin itself has written, together with the
+ * modification stamp the write produced. The resource change listener skips
+ * deltas of journaled resources whose stamp still matches, so the plugin does
+ * not react to its own modifications. A later modification by someone else
+ * changes the stamp and is processed as usual.
+ */
+public class ModificationJournal {
+
+	/** Entries older than this are dropped, their deltas have long been delivered. */
+	private static final long MAX_AGE = 60 * 1000;
+
+	private static final ModificationJournal instance = new ModificationJournal();
+
+	private static class Entry {
+		final long modificationStamp;
+		final long time;
+
+		Entry(long modificationStamp, long time) {
+			this.modificationStamp = modificationStamp;
+			this.time = time;
+		}
+	}
+
+	private final Map<IPath, Entry> entries = new ConcurrentHashMap<>();
+
+	private final AtomicLong suppressedCount = new AtomicLong();
+
+	public static ModificationJournal instance() {
+		return instance;
+	}
+
+	private ModificationJournal() {
+	}
+
+	/**
+	 * Records a modification made by the plugin. Call it after the resource
+	 * has been written (or refreshed), so its current stamp is journaled.
+	 */
+	public void record(IResource resource) {
+		long now = System.currentTimeMillis();
+		expire(now);
+		entries.put(resource.getFullPath(), new Entry(resource.getModificationStamp(), now));
+	}
+
+	/**
+	 * @return <code>true</code> if the current state of the resource was
+	 *         produced by the plugin and its delta should be skipped
+	 */
+	public boolean isOwnModification(IResource resource) {
+		Entry entry = entries.get(resource.getFullPath());
+		if (entry == null) {
+			return false;
+		}
+		if (entry.modificationStamp != resource.getModificationStamp()) {
+			// modified again since, by someone else
+			entries.remove(resource.getFullPath());
+			return false;
+		}
+		suppressedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return the number of deltas skipped because the plugin caused them
+	 */
+	public long getSuppressedCount() {
+		return suppressedCount.get();
+	}
+
+	private void expire(long now) {
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+			if (now - it.next().time > MAX_AGE) {
+				it.remove();
+			}
+		}
+	}
+
+}
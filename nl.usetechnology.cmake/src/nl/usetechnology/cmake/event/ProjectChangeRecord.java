@@ -0,0 +1,66 @@
+package nl.usetechnology.cmake.event;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * The work a resource change requires for a single project. Records of the
+ * same project are merged, so a burst of events results in at most one touch
+ * per CMakeLists.txt and one copy of the project files.
+ */
+public class ProjectChangeRecord {
+
+	private final IProject project;
+	private final Set<IPath> changedPaths = new HashSet<>();
+	private boolean copyProjectFiles;
+	private boolean compileCommandsChanged;
+
+	public ProjectChangeRecord(IProject project) {
+		this.project = project;
+	}
+
+	public IProject getProject() {
+		return project;
+	}
+
+	/**
+	 * @param path project relative path of an added or removed file
+	 */
+	public void changed(IPath path) {
+		changedPaths.add(path);
+	}
+
+	public Set<IPath> getChangedPaths() {
+		return changedPaths;
+	}
+
+	public void copyProjectFiles() {
+		copyProjectFiles = true;
+	}
+
+	public boolean isCopyProjectFiles() {
+		return copyProjectFiles;
+	}
+
+	public void compileCommandsChanged() {
+		compileCommandsChanged = true;
+	}
+
+	public boolean isCompileCommandsChanged() {
+		return compileCommandsChanged;
+	}
+
+	public boolean isEmpty() {
+		return changedPaths.isEmpty() && !copyProjectFiles && !compileCommandsChanged;
+	}
+
+	public void merge(ProjectChangeRecord other) {
+		changedPaths.addAll(other.changedPaths);
+		copyProjectFiles |= other.copyProjectFiles;
+		compileCommandsChanged |= other.compileCommandsChanged;
+	}
+
+}
@@ -0,0 +1,117 @@
+package nl.usetechnology.cmake.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.CMakeProjectJob;
+import nl.usetechnology.cmake.CMakeRequest;
+import nl.usetechnology.cmake.helper.CMakeGlobIndex;
+import nl.usetechnology.cmake.helper.FileContentIO;
+import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.settings.CompileCommandsLanguageSettingsProvider;
+
+/**
+ * Collects the {@link ProjectChangeRecord}s of consecutive resource change
+ * events and processes them in a single job once no new event arrived for
+ * the configured quiet window.
+ */
+public class ResourceChangeProcessor extends WorkspaceJob {
+
+	private static final ResourceChangeProcessor instance = new ResourceChangeProcessor();
+
+	private Map<IProject, ProjectChangeRecord> pending = new HashMap<>();
+
+	private long lastEventTime;
+
+	public static ResourceChangeProcessor instance() {
+		return instance;
+	}
+
+	private ResourceChangeProcessor() {
+		super("Process changed resources");
+		setSystem(true);
+	}
+
+	/**
+	 * Queues the records (called on the notification thread).
+	 */
+	public void add(Collection<ProjectChangeRecord> records) {
+		if (records.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			for (ProjectChangeRecord record : records) {
+				ProjectChangeRecord existing = pending.get(record.getProject());
+				if (existing == null) {
+					pending.put(record.getProject(), record);
+				} else {
+					existing.merge(record);
+				}
+			}
+			lastEventTime = System.currentTimeMillis();
+		}
+		schedule(Activator.getEventQuietWindow());
+	}
+
+	@Override
+	public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+		List<ProjectChangeRecord> records;
+		synchronized (this) {
+			long quietFor = System.currentTimeMillis() - lastEventTime;
+			long window = Activator.getEventQuietWindow();
+			if (quietFor < window) {
+				// the burst is still going on, wait for the rest of it
+				schedule(window - quietFor);
+				return Status.OK_STATUS;
+			}
+			records = new ArrayList<>(pending.values());
+			pending = new HashMap<>();
+		}
+
+		for (ProjectChangeRecord record : records) {
+			IProject project = record.getProject();
+			if (!project.isAccessible()) {
+				continue;
+			}
+			if (!record.getChangedPaths().isEmpty()) {
+				for (IFile file : CMakeGlobIndex.get(project).findCMakeLists(record.getChangedPaths())) {
+					Activator.logInfo("touch " + file);
+					touchFile(file, monitor);
+				}
+			}
+			if (record.isCopyProjectFiles()) {
+				Activator.logInfo("copy .project and .cproject in project " + project);
+				// serialized with the configure runs that write the same files
+				CMakeProjectJob.submit(project, CMakeRequest.copyProjectFiles());
+			}
+			if (record.isCompileCommandsChanged()) {
+				CompileCommandsLanguageSettingsProvider.databaseChanged(project);
+			}
+		}
+		return Status.OK_STATUS;
+	}
+
+	private void touchFile(IFile file, IProgressMonitor monitor) {
+		if (!file.exists()) {
+			return;
+		}
+		try {
+			FileContentIO.touch(file, PluginDataIO.isTouchRewriteEnabled(), monitor);
+		} catch (Exception ce) {
+			Activator.logError("Unable to touch " + file, ce);
+		}
+	}
+
+}
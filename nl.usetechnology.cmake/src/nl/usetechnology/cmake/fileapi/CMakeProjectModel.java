@@ -0,0 +1,171 @@
+package nl.usetechnology.cmake.fileapi;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nl.usetechnology.cmake.helper.CProjectLanguageSettings;
+
+/**
+ * The project model reported by the CMake file API: the targets of the
+ * configuration and, per target, the compile groups with their sources.
+ * Instances are immutable.
+ */
+public class CMakeProjectModel {
+
+	public static class CompileGroup {
+		private final String language;
+		private final List<String> includes;
+		private final List<String> defines;
+		private final List<String> fragments;
+		private final List<String> sources;
+
+		CompileGroup(String language, List<String> includes, List<String> defines, List<String> fragments, List<String> sources) {
+			this.language = language;
+			this.includes = Collections.unmodifiableList(includes);
+			this.defines = Collections.unmodifiableList(defines);
+			this.fragments = Collections.unmodifiableList(fragments);
+			this.sources = Collections.unmodifiableList(sources);
+		}
+
+		public String getLanguage() {
+			return language;
+		}
+
+		/**
+		 * @return the include directories (absolute)
+		 */
+		public List<String> getIncludes() {
+			return includes;
+		}
+
+		/**
+		 * @return the macro definitions as <code>NAME</code> or <code>NAME=VALUE</code>
+		 */
+		public List<String> getDefines() {
+			return defines;
+		}
+
+		/**
+		 * @return the remaining compile flags
+		 */
+		public List<String> getFragments() {
+			return fragments;
+		}
+
+		/**
+		 * @return the sources compiled with these settings, relative to the project
+		 *         or absolute if located outside of it
+		 */
+		public List<String> getSources() {
+			return sources;
+		}
+
+		String getSettingsKey() {
+			return language + '\n' + includes + '\n' + defines + '\n' + fragments;
+		}
+	}
+
+	public static class Target {
+		private final String name;
+		private final String type;
+		private final List<CompileGroup> compileGroups;
+
+		Target(String name, String type, List<CompileGroup> compileGroups) {
+			this.name = name;
+			this.type = type;
+			this.compileGroups = Collections.unmodifiableList(compileGroups);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the target type, e.g. EXECUTABLE, STATIC_LIBRARY or UTILITY
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public List<CompileGroup> getCompileGroups() {
+			return compileGroups;
+		}
+	}
+
+	private final String configuration;
+	private final List<Target> targets;
+
+	CMakeProjectModel(String configuration, List<Target> targets) {
+		this.configuration = configuration;
+		this.targets = Collections.unmodifiableList(targets);
+	}
+
+	/**
+	 * @return the build type of the configuration, may be empty
+	 */
+	public String getConfiguration() {
+		return configuration;
+	}
+
+	public List<Target> getTargets() {
+		return targets;
+	}
+
+	/**
+	 * @return the compile settings of every source, a source compiled by
+	 *         several targets has all of their settings
+	 */
+	private Map<String, Set<String>> getSettingsBySource() {
+		Map<String, Set<String>> settings = new HashMap<>();
+		for (Target target : targets) {
+			for (CompileGroup group : target.getCompileGroups()) {
+				String key = group.getSettingsKey();
+				for (String source : group.getSources()) {
+					if (new File(source).isAbsolute()) {
+						// not part of the project
+						continue;
+					}
+					Set<String> keys = settings.get(source);
+					if (keys == null) {
+						keys = new HashSet<>(2);
+						settings.put(source, keys);
+					}
+					keys.add(key);
+				}
+			}
+		}
+		return settings;
+	}
+
+	/**
+	 * @param newer the model of a later configure run, <code>null</code> if unavailable
+	 * @return the sources whose compile settings changed
+	 */
+	public CProjectLanguageSettings.Delta diff(CMakeProjectModel newer) {
+		if (newer == null) {
+			return new CProjectLanguageSettings.Delta(true, Collections.<String>emptySet());
+		}
+		Map<String, Set<String>> before = getSettingsBySource();
+		Map<String, Set<String>> after = newer.getSettingsBySource();
+		Set<String> changed = new HashSet<>();
+		for (Map.Entry<String, Set<String>> entry : before.entrySet()) {
+			if (!entry.getValue().equals(after.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String source : after.keySet()) {
+			if (!before.containsKey(source)) {
+				changed.add(source);
+			}
+		}
+		// all sources changed, e.g. another toolchain: a reindex is cheaper
+		boolean global = !changed.isEmpty() && changed.size() >= after.size() && changed.size() >= before.size();
+		return new CProjectLanguageSettings.Delta(global, global ? Collections.<String>emptySet() : changed);
+	}
+
+}
@@ -0,0 +1,391 @@
+package nl.usetechnology.cmake.fileapi;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.helper.JsonReader;
+
+/**
+ * Client of the CMake file API (cmake 3.14 and newer). A query for the
+ * codemodel is placed in the build directory before configuring; cmake then
+ * writes its replies to <code>.cmake/api/v1/reply</code>.
+ * <p>
+ * Reply file names contain a hash of their content, so a parsed target is
+ * reused as long as its file name does not change. Only the replies that
+ * changed are parsed again after a configure run.
+ */
+public class FileApi {
+
+	public static final String CLIENT = "client-nl.usetechnology.cmake";
+
+	private static final String QUERY = "{\n  \"requests\": [\n    { \"kind\": \"codemodel\", \"version\": 2 }\n  ]\n}\n";
+
+	/** Parsed targets by reply file, per build directory. */
+	private static final Map<File, Map<String, CMakeProjectModel.Target>> targetCache = new ConcurrentHashMap<>();
+
+	private static class CachedModel {
+		final String codemodelFile;
+		final CMakeProjectModel model;
+
+		CachedModel(String codemodelFile, CMakeProjectModel model) {
+			this.codemodelFile = codemodelFile;
+			this.model = model;
+		}
+	}
+
+	/** The last model read per build directory, with the codemodel file it was read from. */
+	private static final Map<File, CachedModel> modelCache = new ConcurrentHashMap<>();
+
+	private FileApi() {
+	}
+
+	private static File getApiDirectory(File buildDirectory) {
+		return new File(new File(new File(buildDirectory, ".cmake"), "api"), "v1");
+	}
+
+	public static File getQueryFile(File buildDirectory) {
+		return new File(new File(new File(getApiDirectory(buildDirectory), "query"), CLIENT), "query.json");
+	}
+
+	public static File getReplyDirectory(File buildDirectory) {
+		return new File(getApiDirectory(buildDirectory), "reply");
+	}
+
+	/**
+	 * Places the query in the build directory.
+	 * @return <code>true</code> if the query had to be written, so the next
+	 *         configure run must not be skipped
+	 */
+	public static boolean writeQuery(File buildDirectory) throws IOException {
+		File query = getQueryFile(buildDirectory);
+		byte[] content = QUERY.getBytes(StandardCharsets.UTF_8);
+		if (query.isFile() && Arrays.equals(content, Files.readAllBytes(query.toPath()))) {
+			return false;
+		}
+		query.getParentFile().mkdirs();
+		Files.write(query.toPath(), content);
+		return true;
+	}
+
+	/**
+	 * @return the model of the latest reply or <code>null</code> if cmake has
+	 *         not answered the query (yet)
+	 */
+	public static CMakeProjectModel read(File buildDirectory) {
+		File replyDirectory = getReplyDirectory(buildDirectory);
+		try {
+			File index = findIndex(replyDirectory);
+			if (index == null) {
+				return null;
+			}
+			String codemodelFile = readCodemodelFileName(index);
+			if (codemodelFile == null) {
+				return null;
+			}
+			CachedModel cached = modelCache.get(buildDirectory);
+			if (cached != null && codemodelFile.equals(cached.codemodelFile)) {
+				return cached.model;
+			}
+			CMakeProjectModel model = readCodemodel(buildDirectory, replyDirectory, codemodelFile);
+			modelCache.put(buildDirectory, new CachedModel(codemodelFile, model));
+			return model;
+		} catch (IOException e) {
+			Activator.logWarning("Unable to read the CMake file API reply in " + replyDirectory, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the newest index file, its name contains a sortable time stamp
+	 */
+	private static File findIndex(File replyDirectory) {
+		String[] names = replyDirectory.list();
+		if (names == null) {
+			return null;
+		}
+		String latest = null;
+		for (String name : names) {
+			if (name.startsWith("index-") && name.endsWith(".json") && (latest == null || name.compareTo(latest) > 0)) {
+				latest = name;
+			}
+		}
+		return latest == null ? null : new File(replyDirectory, latest);
+	}
+
+	private static JsonReader open(File file) throws IOException {
+		return new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Looks up the response to our query in the index:
+	 * <code>reply.client-nl.usetechnology.cmake["query.json"].responses[].jsonFile</code>.
+	 */
+	private static String readCodemodelFileName(File index) throws IOException {
+		try (JsonReader reader = open(index)) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!"reply".equals(reader.nextName())) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (!CLIENT.equals(reader.nextName())) {
+						reader.skipValue();
+						continue;
+					}
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (!"query.json".equals(reader.nextName())) {
+							reader.skipValue();
+							continue;
+						}
+						return readResponses(reader);
+					}
+					reader.endObject();
+				}
+				reader.endObject();
+			}
+		}
+		return null;
+	}
+
+	private static String readResponses(JsonReader reader) throws IOException {
+		String result = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (!"responses".equals(reader.nextName())) {
+				reader.skipValue();
+				continue;
+			}
+			reader.beginArray();
+			while (reader.hasNext()) {
+				Map<String, String> response = readFlatObject(reader);
+				if ("codemodel".equals(response.get("kind"))) {
+					result = response.get("jsonFile");
+				}
+			}
+			reader.endArray();
+		}
+		reader.endObject();
+		return result;
+	}
+
+	/**
+	 * Reads the string members of an object, nested values are skipped.
+	 */
+	private static Map<String, String> readFlatObject(JsonReader reader) throws IOException {
+		Map<String, String> members = new HashMap<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			JsonReader.Token token = reader.peek();
+			if (token == JsonReader.Token.BEGIN_OBJECT || token == JsonReader.Token.BEGIN_ARRAY) {
+				reader.skipValue();
+			} else {
+				members.put(name, reader.nextString());
+			}
+		}
+		reader.endObject();
+		return members;
+	}
+
+	/**
+	 * Reads the first configuration of the codemodel. Single configuration
+	 * generators (the only ones the plugin uses) report exactly one.
+	 */
+	private static CMakeProjectModel readCodemodel(File buildDirectory, File replyDirectory, String codemodelFile) throws IOException {
+		String configuration = "";
+		List<String> targetFiles = new ArrayList<>();
+		try (JsonReader reader = open(new File(replyDirectory, codemodelFile))) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (!"configurations".equals(reader.nextName())) {
+					reader.skipValue();
+					continue;
+				}
+				reader.beginArray();
+				if (reader.hasNext()) {
+					configuration = readConfiguration(reader, targetFiles);
+				}
+				while (reader.hasNext()) {
+					reader.skipValue();
+				}
+				reader.endArray();
+			}
+		}
+
+		Map<String, CMakeProjectModel.Target> previous = targetCache.get(buildDirectory);
+		Map<String, CMakeProjectModel.Target> current = new HashMap<>();
+		List<CMakeProjectModel.Target> targets = new ArrayList<>(targetFiles.size());
+		int parsed = 0;
+		for (String targetFile : targetFiles) {
+			CMakeProjectModel.Target target = previous == null ? null : previous.get(targetFile);
+			if (target == null) {
+				target = readTarget(new File(replyDirectory, targetFile));
+				parsed++;
+			}
+			current.put(targetFile, target);
+			targets.add(target);
+		}
+		// forget the targets of older replies
+		targetCache.put(buildDirectory, current);
+		Activator.logInfo("CMake file API: parsed " + parsed + " of " + targetFiles.size() + " target replies in " + buildDirectory);
+		return new CMakeProjectModel(configuration, targets);
+	}
+
+	private static String readConfiguration(JsonReader reader, List<String> targetFiles) throws IOException {
+		String name = "";
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String member = reader.nextName();
+			if ("name".equals(member)) {
+				name = reader.nextString();
+			} else if ("targets".equals(member)) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					String jsonFile = readFlatObject(reader).get("jsonFile");
+					if (jsonFile != null) {
+						targetFiles.add(jsonFile);
+					}
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return name;
+	}
+
+	private static CMakeProjectModel.Target readTarget(File file) throws IOException {
+		String name = null;
+		String type = null;
+		List<String> sources = new ArrayList<>();
+		List<Integer> groupOfSource = new ArrayList<>();
+		List<CMakeProjectModel.CompileGroup> compileGroups = new ArrayList<>();
+		List<List<String>> sourcesOfGroup = new ArrayList<>();
+		try (JsonReader reader = open(file)) {
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String member = reader.nextName();
+				switch (member) {
+				case "name":
+					name = reader.nextString();
+					break;
+				case "type":
+					type = reader.nextString();
+					break;
+				case "sources":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						readSource(reader, sources, groupOfSource);
+					}
+					reader.endArray();
+					break;
+				case "compileGroups":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						List<String> groupSources = new ArrayList<>();
+						compileGroups.add(readCompileGroup(reader, groupSources));
+						sourcesOfGroup.add(groupSources);
+					}
+					reader.endArray();
+					break;
+				default:
+					reader.skipValue();
+					break;
+				}
+			}
+		}
+
+		// the sources refer to their group by index, the groups were created with empty lists
+		for (int i = 0; i < sources.size(); i++) {
+			int group = groupOfSource.get(i);
+			if (group >= 0 && group < sourcesOfGroup.size()) {
+				sourcesOfGroup.get(group).add(sources.get(i));
+			}
+		}
+		return new CMakeProjectModel.Target(name, type, compileGroups);
+	}
+
+	private static void readSource(JsonReader reader, List<String> sources, List<Integer> groupOfSource) throws IOException {
+		String path = null;
+		int group = -1;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String member = reader.nextName();
+			if ("path".equals(member)) {
+				path = reader.nextString();
+			} else if ("compileGroupIndex".equals(member)) {
+				group = reader.nextInt();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		if (path != null) {
+			sources.add(path);
+			groupOfSource.add(group);
+		}
+	}
+
+	/**
+	 * @param sources the (still empty) list of sources of the group
+	 */
+	private static CMakeProjectModel.CompileGroup readCompileGroup(JsonReader reader, List<String> sources) throws IOException {
+		String language = "";
+		List<String> includes = new ArrayList<>();
+		List<String> defines = new ArrayList<>();
+		List<String> fragments = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String member = reader.nextName();
+			switch (member) {
+			case "language":
+				language = reader.nextString();
+				break;
+			case "includes":
+				readMemberOfEach(reader, "path", includes);
+				break;
+			case "defines":
+				readMemberOfEach(reader, "define", defines);
+				break;
+			case "compileCommandFragments":
+				readMemberOfEach(reader, "fragment", fragments);
+				break;
+			default:
+				reader.skipValue();
+				break;
+			}
+		}
+		reader.endObject();
+		return new CMakeProjectModel.CompileGroup(language, includes, defines, fragments, sources);
+	}
+
+	/**
+	 * Reads an array of objects and collects one string member of each.
+	 */
+	private static void readMemberOfEach(JsonReader reader, String member, List<String> values) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			String value = readFlatObject(reader).get(member);
+			if (value != null) {
+				values.add(value);
+			}
+		}
+		reader.endArray();
+	}
+
+}
@@ -0,0 +1,363 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.CMakeNature;
+
+/**
+ * The <code>file(GLOB ...)</code> and <code>file(GLOB_RECURSE ...)</code>
+ * patterns of all CMakeLists.txt and <code>*.cmake</code> files in a project.
+ * Used to decide which file has to be touched when files are added or
+ * removed: only a file whose globs match one of the changed paths. Touching
+ * an included <code>*.cmake</code> file makes cmake configure again as well.
+ * <p>
+ * Indices are cached per project and must be invalidated whenever one of the
+ * scanned files changes.
+ */
+public class CMakeGlobIndex {
+
+	public static final String CMAKELISTS = "CMakeLists.txt";
+
+	private static final String CMAKE_EXTENSION = ".cmake";
+
+	private static final Pattern FILE_COMMAND = Pattern.compile("(?i)(?<![A-Za-z0-9_])file\\s*\\(");
+
+	private static final Pattern VARIABLE = Pattern.compile("\\$\\{([^}]*)\\}");
+
+	/** Stands in for an unresolved variable, matches anything. */
+	private static final char ANYTHING = '\u0001';
+
+	private static final Map<IProject, CMakeGlobIndex> cache = new ConcurrentHashMap<>();
+
+	private static class Glob {
+		final IFile cmakeLists;
+		final Pattern pattern;
+
+		Glob(IFile cmakeLists, Pattern pattern) {
+			this.cmakeLists = cmakeLists;
+			this.pattern = pattern;
+		}
+	}
+
+	private final List<Glob> globs;
+
+	private CMakeGlobIndex(List<Glob> globs) {
+		this.globs = globs;
+	}
+
+	/**
+	 * @return the cached index of the project, scanning its CMakeLists.txt files if needed
+	 */
+	public static CMakeGlobIndex get(IProject project) {
+		CMakeGlobIndex index = cache.get(project);
+		if (index == null) {
+			index = build(project);
+			cache.put(project, index);
+		}
+		return index;
+	}
+
+	public static void invalidate(IProject project) {
+		cache.remove(project);
+	}
+
+	/**
+	 * @return <code>true</code> if files of that name are scanned for globs
+	 */
+	public static boolean isScanned(String fileName) {
+		return CMAKELISTS.equals(fileName) || fileName.endsWith(CMAKE_EXTENSION);
+	}
+
+	/**
+	 * @param changedPaths project relative paths of added or removed files
+	 * @return the CMakeLists.txt and *.cmake files with a glob matching at least one of the paths
+	 */
+	public Set<IFile> findCMakeLists(Collection<IPath> changedPaths) {
+		Set<IFile> result = new HashSet<>();
+		for (Glob glob : globs) {
+			if (result.contains(glob.cmakeLists)) {
+				continue;
+			}
+			for (IPath path : changedPaths) {
+				if (glob.pattern.matcher(path.makeRelative().toString()).matches()) {
+					result.add(glob.cmakeLists);
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return globs.isEmpty();
+	}
+
+	private static CMakeGlobIndex build(final IProject project) {
+		if (project.getLocation() == null) {
+			return new CMakeGlobIndex(Collections.<Glob>emptyList());
+		}
+		final java.nio.file.Path root = project.getLocation().toFile().toPath();
+		final String binDirectory = PluginDataIO.getBinDirectory();
+		final List<Glob> globs = new ArrayList<>();
+		try {
+			Files.walkFileTree(root, new SimpleFileVisitor<java.nio.file.Path>() {
+				@Override
+				public FileVisitResult preVisitDirectory(java.nio.file.Path dir, BasicFileAttributes attrs) {
+					if (dir.equals(root)) {
+						return FileVisitResult.CONTINUE;
+					}
+					String name = dir.getFileName().toString();
+					if (name.startsWith(".")) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					if (dir.getParent().equals(root) && (name.equals(binDirectory) || CMakeNature.isDerivedDirectory(name))) {
+						return FileVisitResult.SKIP_SUBTREE;
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(java.nio.file.Path file, BasicFileAttributes attrs) {
+					if (isScanned(file.getFileName().toString())) {
+						IPath relative = new Path(root.relativize(file).toString());
+						try {
+							readGlobs(project, relative, file.toFile(), globs);
+						} catch (IOException e) {
+							Activator.logWarning("Unable to read " + file, e);
+						}
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			Activator.logWarning("Unable to scan " + root + " for cmake files", e);
+		}
+		return new CMakeGlobIndex(globs);
+	}
+
+	private static void readGlobs(IProject project, IPath relative, File file, List<Glob> globs) throws IOException {
+		String content = stripComments(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		IFile cmakeLists = project.getFile(relative);
+		String currentDirectory = relative.removeLastSegments(1).toString();
+		// an included file is evaluated in the directory of the including CMakeLists.txt
+		boolean included = !CMAKELISTS.equals(relative.lastSegment());
+		String projectLocation = project.getLocation().toString();
+
+		Matcher matcher = FILE_COMMAND.matcher(content);
+		while (matcher.find()) {
+			List<String> arguments = parseArguments(content, matcher.end());
+			if (arguments.isEmpty()) {
+				continue;
+			}
+			String mode = arguments.get(0).toUpperCase(Locale.ROOT);
+			boolean recursive = mode.equals("GLOB_RECURSE");
+			if (!recursive && !mode.equals("GLOB")) {
+				continue;
+			}
+			// skip the output variable and the options
+			for (int i = 2; i < arguments.size(); i++) {
+				String argument = arguments.get(i);
+				switch (argument) {
+				case "LIST_DIRECTORIES":
+				case "RELATIVE":
+					i++;
+					continue;
+				case "CONFIGURE_DEPENDS":
+				case "FOLLOW_SYMLINKS":
+					continue;
+				}
+				String glob = resolve(argument, currentDirectory, included, projectLocation);
+				if (glob != null) {
+					globs.add(new Glob(cmakeLists, toPattern(glob, recursive)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the glob relative to the project or <code>null</code> if it points outside the project
+	 */
+	private static String resolve(String glob, String currentDirectory, boolean included, String projectLocation) {
+		String current = currentDirectory.isEmpty() ? "" : "/" + currentDirectory;
+		String anything = String.valueOf(ANYTHING);
+		StringBuffer sb = new StringBuffer();
+		Matcher matcher = VARIABLE.matcher(glob);
+		while (matcher.find()) {
+			String replacement;
+			switch (matcher.group(1)) {
+			case "CMAKE_CURRENT_SOURCE_DIR":
+				replacement = included ? anything : current;
+				break;
+			case "CMAKE_CURRENT_LIST_DIR":
+				replacement = current;
+				break;
+			case "CMAKE_SOURCE_DIR":
+			case "PROJECT_SOURCE_DIR":
+			case "CMAKE_HOME_DIRECTORY":
+				replacement = "";
+				break;
+			default:
+				replacement = anything;
+				break;
+			}
+			matcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+		}
+		matcher.appendTail(sb);
+		String resolved = sb.toString().replace('\\', '/');
+		if (resolved.isEmpty()) {
+			return null;
+		}
+
+		if (resolved.charAt(0) == ANYTHING) {
+			// unknown base directory, the rest may match anywhere in the project
+			return resolved.startsWith(anything + "/") ? anything + resolved.substring(2) : resolved;
+		}
+		IPath path;
+		if (resolved.startsWith(projectLocation + "/")) {
+			path = new Path(resolved.substring(projectLocation.length()));
+		} else if (new File(resolved).isAbsolute() && resolved.charAt(0) != '/') {
+			return null;
+		} else if (resolved.startsWith("/")) {
+			if (glob.startsWith("/")) {
+				// a real absolute path outside the project
+				return null;
+			}
+			path = new Path(resolved);
+		} else {
+			path = new Path(currentDirectory).append(resolved);
+		}
+		return path.makeRelative().toString();
+	}
+
+	/**
+	 * Converts a glob relative to the project into a pattern for project relative
+	 * paths. A recursive glob matches its file name part in any sub directory.
+	 */
+	static Pattern toPattern(String glob, boolean recursive) {
+		StringBuilder regex = new StringBuilder();
+		int nameStart = glob.lastIndexOf('/') + 1;
+		if (recursive) {
+			appendGlob(regex, glob.substring(0, nameStart));
+			regex.append("(?:.*/)?");
+			appendGlob(regex, glob.substring(nameStart));
+		} else {
+			appendGlob(regex, glob);
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	private static void appendGlob(StringBuilder regex, String glob) {
+		StringBuilder literal = new StringBuilder();
+		for (char c : glob.toCharArray()) {
+			if (c == '*' || c == '?' || c == ANYTHING) {
+				if (literal.length() > 0) {
+					regex.append(Pattern.quote(literal.toString()));
+					literal.setLength(0);
+				}
+				regex.append(c == '*' ? "[^/]*" : c == '?' ? "[^/]" : ".*");
+			} else {
+				literal.append(c);
+			}
+		}
+		if (literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+	}
+
+	/**
+	 * Removes line comments, leaving quoted arguments intact.
+	 */
+	private static String stripComments(String content) {
+		StringBuilder sb = new StringBuilder(content.length());
+		boolean quoted = false;
+		boolean comment = false;
+		for (int i = 0; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (comment) {
+				if (c == '\n') {
+					comment = false;
+					sb.append(c);
+				}
+				continue;
+			}
+			if (c == '"' && (i == 0 || content.charAt(i - 1) != '\\')) {
+				quoted = !quoted;
+			} else if (c == '#' && !quoted) {
+				comment = true;
+				continue;
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return the arguments of the command whose opening parenthesis ends at <code>start</code>
+	 */
+	private static List<String> parseArguments(String content, int start) {
+		List<String> arguments = new ArrayList<>();
+		StringBuilder argument = null;
+		boolean quoted = false;
+		int depth = 0;
+		for (int i = start; i < content.length(); i++) {
+			char c = content.charAt(i);
+			if (quoted) {
+				if (c == '"' && content.charAt(i - 1) != '\\') {
+					quoted = false;
+				} else {
+					argument.append(c);
+				}
+				continue;
+			}
+			if (c == '"') {
+				quoted = true;
+				if (argument == null) {
+					argument = new StringBuilder();
+				}
+			} else if (Character.isWhitespace(c) || (c == ')' && depth == 0)) {
+				if (argument != null) {
+					arguments.add(argument.toString());
+					argument = null;
+				}
+				if (c == ')') {
+					break;
+				}
+			} else {
+				if (c == '(') {
+					depth++;
+				} else if (c == ')') {
+					depth--;
+				}
+				if (argument == null) {
+					argument = new StringBuilder();
+				}
+				argument.append(c);
+			}
+		}
+		return arguments;
+	}
+
+}
@@ -0,0 +1,156 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The include paths, macros and source entries of a <code>.cproject</code>
+ * file (the <code>pathentry</code> elements the CMake Eclipse generator
+ * writes), grouped by the resource path they apply to. Two snapshots can be
+ * compared to find out which parts of the project have to be reindexed.
+ */
+public class CProjectLanguageSettings {
+
+	/** Path of the entries that apply to the whole project. */
+	public static final String PROJECT_PATH = "";
+
+	private static final String KIND_INCLUDE = "inc";
+	private static final String KIND_MACRO = "mac";
+
+	/**
+	 * Result of comparing two snapshots.
+	 */
+	public static class Delta {
+		private final boolean global;
+		private final Set<String> paths;
+
+		public Delta(boolean global, Set<String> paths) {
+			this.global = global;
+			this.paths = paths;
+		}
+
+		/**
+		 * @return <code>true</code> if the change affects every translation unit
+		 */
+		public boolean isGlobal() {
+			return global;
+		}
+
+		/**
+		 * @return the project relative paths whose settings changed
+		 */
+		public Set<String> getPaths() {
+			return paths;
+		}
+
+		public boolean isEmpty() {
+			return !global && paths.isEmpty();
+		}
+	}
+
+	private final boolean available;
+
+	/** include paths and macros by resource path, in order: the include order affects header lookup */
+	private final Map<String, List<String>> entriesByPath = new HashMap<>();
+
+	/** all other entries (sources, outputs, containers) */
+	private final Set<String> projectEntries = new HashSet<>();
+
+	private CProjectLanguageSettings(boolean available) {
+		this.available = available;
+	}
+
+	public static CProjectLanguageSettings read(File cprojectFile) {
+		if (!cprojectFile.isFile()) {
+			return new CProjectLanguageSettings(false);
+		}
+		try (InputStream in = new BufferedInputStream(new FileInputStream(cprojectFile))) {
+			return read(in);
+		} catch (IOException | XMLStreamException e) {
+			return new CProjectLanguageSettings(false);
+		}
+	}
+
+	public static CProjectLanguageSettings read(InputStream in) throws XMLStreamException {
+		CProjectLanguageSettings settings = new CProjectLanguageSettings(true);
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+		try {
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && "pathentry".equals(reader.getLocalName())) {
+					settings.add(reader);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return settings;
+	}
+
+	private void add(XMLStreamReader reader) {
+		String kind = null;
+		String path = PROJECT_PATH;
+		Map<String, String> attributes = new TreeMap<>();
+		for (int i = 0; i < reader.getAttributeCount(); i++) {
+			String name = reader.getAttributeLocalName(i);
+			String value = reader.getAttributeValue(i);
+			if ("kind".equals(name)) {
+				kind = value;
+			} else if ("path".equals(name)) {
+				path = value;
+			} else {
+				attributes.put(name, value);
+			}
+		}
+		String entry = kind + attributes;
+		if (KIND_INCLUDE.equals(kind) || KIND_MACRO.equals(kind)) {
+			List<String> entries = entriesByPath.get(path);
+			if (entries == null) {
+				entries = new ArrayList<>();
+				entriesByPath.put(path, entries);
+			}
+			entries.add(entry);
+		} else {
+			projectEntries.add(entry + path);
+		}
+	}
+
+	/**
+	 * Compares this (old) snapshot with the new one.
+	 */
+	public Delta diff(CProjectLanguageSettings newer) {
+		if (!available || !newer.available || !projectEntries.equals(newer.projectEntries)) {
+			return new Delta(true, Collections.<String>emptySet());
+		}
+		Set<String> changed = new HashSet<>();
+		Set<String> paths = new HashSet<>(entriesByPath.keySet());
+		paths.addAll(newer.entriesByPath.keySet());
+		for (String path : paths) {
+			List<String> oldEntries = entriesByPath.get(path);
+			List<String> newEntries = newer.entriesByPath.get(path);
+			if (oldEntries == null || newEntries == null || !oldEntries.equals(newEntries)) {
+				if (PROJECT_PATH.equals(path)) {
+					return new Delta(true, Collections.<String>emptySet());
+				}
+				changed.add(path);
+			}
+		}
+		return new Delta(false, changed);
+	}
+
+}
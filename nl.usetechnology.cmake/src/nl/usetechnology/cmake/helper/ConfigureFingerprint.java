@@ -0,0 +1,109 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Fingerprint of everything a configure run depends on: the effective cmake
+ * command line and the modification time and size of every file CMake
+ * recorded as input of the configure step. If the fingerprint stored after
+ * the last successful run still matches, running cmake again cannot change
+ * the result.
+ */
+public class ConfigureFingerprint {
+
+	private static final String FINGERPRINT_FILE = "cmake-eclipse-helper.fingerprint";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static File getFingerprintFile(File buildDirectory) {
+		return new File(new File(buildDirectory, "CMakeFiles"), FINGERPRINT_FILE);
+	}
+
+	/**
+	 * @return the fingerprint or <code>null</code> if CMake did not record its
+	 *         inputs (no Makefile generator or not configured yet)
+	 */
+	public static String compute(File buildDirectory, String commandLine) throws IOException {
+		MakefileCMake makefile = MakefileCMake.read(buildDirectory);
+		if (makefile == null) {
+			return null;
+		}
+		for (File output : makefile.getFiles(MakefileCMake.OUTPUTS)) {
+			if (!output.exists()) {
+				return null; // generated files were removed, configure again
+			}
+		}
+		MessageDigest digest = newDigest();
+		digest.update(commandLine.getBytes(UTF8));
+		List<File> inputs = makefile.getFiles(MakefileCMake.DEPENDS);
+		for (File input : inputs) {
+			StringBuilder sb = new StringBuilder();
+			sb.append('\0').append(input.getPath()).append('\0');
+			sb.append(input.lastModified()).append(':').append(input.length());
+			digest.update(sb.toString().getBytes(UTF8));
+		}
+		return toHex(digest.digest());
+	}
+
+	public static boolean isUpToDate(File buildDirectory, String commandLine) {
+		File file = getFingerprintFile(buildDirectory);
+		if (!file.isFile()) {
+			return false;
+		}
+		try {
+			String stored = new String(Files.readAllBytes(file.toPath()), UTF8).trim();
+			String current = compute(buildDirectory, commandLine);
+			return current != null && current.equals(stored);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records the fingerprint after a successful configure run.
+	 */
+	public static void store(File buildDirectory, String commandLine) {
+		File file = getFingerprintFile(buildDirectory);
+		try {
+			String fingerprint = compute(buildDirectory, commandLine);
+			if (fingerprint == null) {
+				Files.deleteIfExists(file.toPath());
+			} else {
+				Files.write(file.toPath(), fingerprint.getBytes(UTF8));
+			}
+		} catch (IOException e) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Forces the next configure run, e.g. after it failed.
+	 */
+	public static void invalidate(File buildDirectory) {
+		getFingerprintFile(buildDirectory).delete();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+}
@@ -2,16 +2,28 @@ package nl.usetechnology.cmake.helper;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.event.ModificationJournal;
+
 public class FileContentIO {
 
+	private static final int COMPARE_CHUNK_SIZE = 64 * 1024;
+
 	public static CharSequence readFileContent(IFile file) throws IOException, CoreException {
 		StringBuilder sb = new StringBuilder();
 		BufferedReader br = new BufferedReader(new InputStreamReader(file.getContents()));
@@ -30,4 +42,116 @@ public class FileContentIO {
 			file.setContents(bis, IResource.NONE, monitor);
 		}
 	}
+
+	/**
+	 * Bumps the modification time of the file without touching its content
+	 * and refreshes it, so make/ninja re-run cmake on the next build. Falls
+	 * back to {@link #rewriteFileContent(IFile, IProgressMonitor)} if the
+	 * time stamp cannot be set.
+	 * @param rewrite <code>true</code> to always rewrite the content, for file
+	 *        systems where a changed time stamp does not trigger the
+	 *        regeneration rule
+	 */
+	public static void touch(IFile file, boolean rewrite, IProgressMonitor monitor) throws IOException, CoreException {
+		if (!rewrite) {
+			try {
+				Path path = file.getLocation().toFile().toPath();
+				long current = Files.getLastModifiedTime(path).toMillis();
+				// make sure the time stamp advances on file systems with a coarse resolution
+				long stamp = Math.max(System.currentTimeMillis(), current + 1000);
+				Files.setLastModifiedTime(path, FileTime.fromMillis(stamp));
+				file.refreshLocal(IResource.DEPTH_ZERO, monitor);
+				ModificationJournal.instance().record(file);
+				return;
+			} catch (IOException e) {
+				Activator.logInfo("Unable to set modification time of " + file + ", rewriting it: " + e.getLocalizedMessage());
+			}
+		}
+		rewriteFileContent(file, monitor);
+	}
+
+	/**
+	 * Writes the unchanged bytes of the file back, preserving its encoding
+	 * and line endings.
+	 */
+	public static void rewriteFileContent(IFile file, IProgressMonitor monitor) throws IOException, CoreException {
+		byte[] content = Files.readAllBytes(file.getLocation().toFile().toPath());
+		file.setContents(new ByteArrayInputStream(content), IResource.FORCE, monitor);
+		ModificationJournal.instance().record(file);
+	}
+
+	/**
+	 * Compares the bytes of both files, without decoding them. Files of
+	 * different size are rejected without reading them.
+	 */
+	public static boolean contentEquals(File first, File second) throws IOException {
+		if (first.length() != second.length()) {
+			return false;
+		}
+		try (FileChannel a = FileChannel.open(first.toPath(), StandardOpenOption.READ);
+				FileChannel b = FileChannel.open(second.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer bufferA = ByteBuffer.allocateDirect(COMPARE_CHUNK_SIZE);
+			ByteBuffer bufferB = ByteBuffer.allocateDirect(COMPARE_CHUNK_SIZE);
+			while (true) {
+				bufferA.clear();
+				bufferB.clear();
+				int readA = fill(a, bufferA);
+				int readB = fill(b, bufferB);
+				if (readA != readB) {
+					// the file changed while comparing
+					return false;
+				}
+				if (readA == 0) {
+					return true;
+				}
+				bufferA.flip();
+				bufferB.flip();
+				if (!bufferA.equals(bufferB)) {
+					return false;
+				}
+			}
+		}
+	}
+
+	private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Copies the bytes of the source over the destination using a channel
+	 * transfer, then refreshes the destination.
+	 * @return <code>false</code> if the content was already equal and nothing was written
+	 */
+	public static boolean copyIfDifferent(IFile source, IFile destination, IProgressMonitor monitor) throws IOException, CoreException {
+		File from = source.getLocation().toFile();
+		File to = destination.getLocation().toFile();
+		if (to.isFile() && contentEquals(from, to)) {
+			return false;
+		}
+		try (FileChannel in = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(to.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long position = 0;
+			while (position < size) {
+				long transferred = in.transferTo(position, size - position, out);
+				if (transferred <= 0) {
+					// the source shrank, the next copy repairs the destination
+					throw new IOException(from + " was truncated while copying it to " + to);
+				}
+				position += transferred;
+			}
+		}
+		destination.refreshLocal(IResource.DEPTH_ZERO, monitor);
+		ModificationJournal.instance().record(destination);
+		return true;
+	}
 }
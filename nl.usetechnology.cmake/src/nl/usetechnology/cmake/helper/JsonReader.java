@@ -0,0 +1,272 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A minimal pull parser for JSON documents, just enough for the replies of
+ * the CMake file API. Values are read one token at a time, so large files are
+ * never held in memory as a tree. Separators are not validated strictly.
+ */
+public class JsonReader implements Closeable {
+
+	public enum Token {
+		BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+	}
+
+	private final Reader in;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+
+	private Token peeked;
+	private String peekedValue;
+
+	public JsonReader(Reader in) {
+		this.in = in;
+	}
+
+	public Token peek() throws IOException {
+		if (peeked != null) {
+			return peeked;
+		}
+		int c = nextNonSeparator();
+		switch (c) {
+		case -1:
+			peeked = Token.END_DOCUMENT;
+			break;
+		case '{':
+			peeked = Token.BEGIN_OBJECT;
+			break;
+		case '}':
+			peeked = Token.END_OBJECT;
+			break;
+		case '[':
+			peeked = Token.BEGIN_ARRAY;
+			break;
+		case ']':
+			peeked = Token.END_ARRAY;
+			break;
+		case '"':
+			peekedValue = readString();
+			// a string followed by a colon is the name of a member
+			int next = nextNonWhitespace();
+			if (next == ':') {
+				peeked = Token.NAME;
+			} else {
+				if (next != -1) {
+					pos--;
+				}
+				peeked = Token.STRING;
+			}
+			break;
+		default:
+			peekedValue = readLiteral((char)c);
+			if ("true".equals(peekedValue) || "false".equals(peekedValue)) {
+				peeked = Token.BOOLEAN;
+			} else if ("null".equals(peekedValue)) {
+				peeked = Token.NULL;
+			} else {
+				peeked = Token.NUMBER;
+			}
+			break;
+		}
+		return peeked;
+	}
+
+	/**
+	 * @return <code>true</code> if the current object or array has another element
+	 */
+	public boolean hasNext() throws IOException {
+		Token token = peek();
+		return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+	}
+
+	public void beginObject() throws IOException {
+		expect(Token.BEGIN_OBJECT);
+	}
+
+	public void endObject() throws IOException {
+		expect(Token.END_OBJECT);
+	}
+
+	public void beginArray() throws IOException {
+		expect(Token.BEGIN_ARRAY);
+	}
+
+	public void endArray() throws IOException {
+		expect(Token.END_ARRAY);
+	}
+
+	public String nextName() throws IOException {
+		expect(Token.NAME);
+		return peekedValue;
+	}
+
+	/**
+	 * @return the string, or the literal text of a number, boolean or null value
+	 */
+	public String nextString() throws IOException {
+		Token token = peek();
+		if (token != Token.STRING && token != Token.NUMBER && token != Token.BOOLEAN && token != Token.NULL) {
+			throw new IOException("Expected a value but was " + token);
+		}
+		peeked = null;
+		return peekedValue;
+	}
+
+	public long nextLong() throws IOException {
+		expect(Token.NUMBER);
+		try {
+			return Long.parseLong(peekedValue);
+		} catch (NumberFormatException e) {
+			throw new IOException("Not an integer: " + peekedValue);
+		}
+	}
+
+	public int nextInt() throws IOException {
+		return (int)nextLong();
+	}
+
+	public boolean nextBoolean() throws IOException {
+		expect(Token.BOOLEAN);
+		return "true".equals(peekedValue);
+	}
+
+	/**
+	 * Skips the next value, including all nested values of an object or array.
+	 */
+	public void skipValue() throws IOException {
+		int depth = 0;
+		do {
+			Token token = peek();
+			peeked = null;
+			switch (token) {
+			case BEGIN_OBJECT:
+			case BEGIN_ARRAY:
+				depth++;
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				depth--;
+				break;
+			case END_DOCUMENT:
+				return;
+			default:
+				break;
+			}
+		} while (depth > 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private void expect(Token expected) throws IOException {
+		Token token = peek();
+		if (token != expected) {
+			throw new IOException("Expected " + expected + " but was " + token);
+		}
+		peeked = null;
+	}
+
+	private int read() throws IOException {
+		if (pos == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			pos = 0;
+			if (limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[pos++];
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+		return c;
+	}
+
+	private int nextNonSeparator() throws IOException {
+		int c;
+		do {
+			c = nextNonWhitespace();
+		} while (c == ',' || c == ':');
+		return c;
+	}
+
+	private String readString() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (true) {
+			int c = read();
+			switch (c) {
+			case -1:
+				throw new IOException("Unterminated string");
+			case '"':
+				return sb.toString();
+			case '\\':
+				int escaped = read();
+				switch (escaped) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				case 'b':
+					sb.append('\b');
+					break;
+				case 'f':
+					sb.append('\f');
+					break;
+				case 'u':
+					char[] hex = new char[4];
+					for (int i = 0; i < 4; i++) {
+						int h = read();
+						if (h == -1) {
+							throw new IOException("Unterminated escape sequence");
+						}
+						hex[i] = (char)h;
+					}
+					sb.append((char)Integer.parseInt(new String(hex), 16));
+					break;
+				case -1:
+					throw new IOException("Unterminated escape sequence");
+				default:
+					sb.append((char)escaped);
+					break;
+				}
+				break;
+			default:
+				sb.append((char)c);
+				break;
+			}
+		}
+	}
+
+	private String readLiteral(char first) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(first);
+		while (true) {
+			int c = read();
+			if (c == -1) {
+				break;
+			}
+			if (c == ',' || c == ':' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+				pos--;
+				break;
+			}
+			sb.append((char)c);
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,129 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the file lists CMake records in
+ * <code>&lt;build-dir&gt;/CMakeFiles/Makefile.cmake</code> (only written by
+ * the Makefile based generators).
+ */
+public class MakefileCMake {
+
+	/** Files read while configuring (CMakeLists.txt, modules, toolchain, cache). */
+	public static final String DEPENDS = "CMAKE_MAKEFILE_DEPENDS";
+
+	/** Files the generate step writes (the top level Makefile). */
+	public static final String OUTPUTS = "CMAKE_MAKEFILE_OUTPUTS";
+
+	/** Byproducts of the generate step (configured files, generated sources). */
+	public static final String PRODUCTS = "CMAKE_MAKEFILE_PRODUCTS";
+
+	private final File buildDirectory;
+
+	private final Map<String, List<String>> variables;
+
+	private MakefileCMake(File buildDirectory, Map<String, List<String>> variables) {
+		this.buildDirectory = buildDirectory;
+		this.variables = variables;
+	}
+
+	public static File getFile(File buildDirectory) {
+		return new File(new File(buildDirectory, "CMakeFiles"), "Makefile.cmake");
+	}
+
+	/**
+	 * @return the parsed file or <code>null</code> if the build directory
+	 *         does not contain a Makefile.cmake
+	 */
+	public static MakefileCMake read(File buildDirectory) throws IOException {
+		File file = getFile(buildDirectory);
+		if (!file.isFile()) {
+			return null;
+		}
+		Map<String, List<String>> variables = new HashMap<>();
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"))) {
+			String line;
+			List<String> values = null;
+			while ((line = br.readLine()) != null) {
+				line = line.trim();
+				if (values == null) {
+					if (!line.startsWith("set(")) {
+						continue;
+					}
+					int nameEnd = 4;
+					while (nameEnd < line.length() && !Character.isWhitespace(line.charAt(nameEnd)) && line.charAt(nameEnd) != ')') {
+						nameEnd++;
+					}
+					values = new ArrayList<>();
+					variables.put(line.substring(4, nameEnd), values);
+					line = line.substring(nameEnd);
+				}
+				if (addQuotedValues(line, values)) {
+					values = null;
+				}
+			}
+		}
+		return new MakefileCMake(buildDirectory, variables);
+	}
+
+	/**
+	 * @return <code>true</code> if the line closes the set command
+	 */
+	private static boolean addQuotedValues(String line, List<String> values) {
+		int pos = 0;
+		while (pos < line.length()) {
+			char c = line.charAt(pos);
+			if (c == ')') {
+				return true;
+			}
+			if (c == '"') {
+				int end = line.indexOf('"', pos + 1);
+				if (end < 0) {
+					end = line.length();
+				}
+				values.add(line.substring(pos + 1, end));
+				pos = end + 1;
+			} else {
+				pos++;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the raw entries of the given variable (relative to the build directory or absolute)
+	 */
+	public List<String> getEntries(String variable) {
+		List<String> values = variables.get(variable);
+		if (values == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * @return the entries of the given variable resolved against the build directory
+	 */
+	public List<File> getFiles(String variable) {
+		List<String> entries = getEntries(variable);
+		List<File> files = new ArrayList<>(entries.size());
+		for (String entry : entries) {
+			File file = new File(entry);
+			if (!file.isAbsolute()) {
+				file = new File(buildDirectory, entry);
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+}
@@ -6,11 +6,10 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.eclipse.core.resources.IProject;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.DirectoryDialog;
 import org.eclipse.swt.widgets.Display;
@@ -22,8 +21,7 @@ public class PluginDataIO {
 	
     public static List<String> fileList(Path directory) {
         List<String> fileNames = new ArrayList<>();
-        try {
-        	DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory);
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
             for (Path path : directoryStream) {
                 fileNames.add(path.getFileName().toString());
             }
@@ -34,6 +32,14 @@ public class PluginDataIO {
 	public static String getBinDirectory() {
 		return Activator.getBinPath();
 	}
+
+	/**
+	 * @return the directory cmake generates the build tree of the architecture in
+	 */
+	public static File getBuildDirectory(IProject project, String architecture) {
+		File projectLocation = project.getLocation().makeAbsolute().toFile();
+		return new File(new File(projectLocation, getBinDirectory()), architecture);
+	}
 	
 	public static Path getDataDirectory() {
 		String url = Activator.getCMakePath();
@@ -74,23 +80,13 @@ public class PluginDataIO {
 	public static boolean isTouchFilesEnabled() {
 		return Activator.isTouchFilesEnabled();
 	}
+
+	public static boolean isTouchRewriteEnabled() {
+		return Activator.TOUCH_MODE_REWRITE.equals(Activator.getTouchMode());
+	}
 	
 	public static List<String> getToolchainArchitectures() {
-		Path pathToToolchains = getPathToToolchains();
-		if(pathToToolchains == null || !pathToToolchains.toFile().exists()) {
-			return Collections.emptyList();
-		}
-		List<String> fileNames = fileList(pathToToolchains);
-		List<String> results = new ArrayList<>(fileNames.size());
-		for(String fileName : fileNames) {
-			Matcher m = toolchainPattern.matcher(fileName);
-			if(m.matches()) {
-				results.add(m.group(1));
-			}
-		}
-		Collections.sort(results);
-		
-		return results;
+		return ToolchainCatalog.instance().getArchitectures();
 	}
 	
 	public static List<String> getBuildTypes() {
@@ -98,9 +94,7 @@ public class PluginDataIO {
 	}
 	
 	public static Path getToolchainPathForArchitecture(String architecture) {
-		Path pathToToolchains = getPathToToolchains();
-		String fileName = "toolchain." + architecture + ".cmake";
-		return pathToToolchains.resolve(fileName).toAbsolutePath();
+		return ToolchainCatalog.instance().getToolchainFile(architecture);
 	}
 	
 }
@@ -0,0 +1,296 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import nl.usetechnology.cmake.event.ModificationJournal;
+
+/**
+ * Replaces the absolute project and workspace paths in the generated
+ * <code>.project</code> and <code>.cproject</code> files, so they can be
+ * checked in. The file is streamed through StAX in a single pass; the
+ * original bytes are kept untouched if nothing had to be replaced.
+ */
+public class ProjectFileRewriter {
+
+	public static final String PROJECT_LOC = "${PROJECT_LOC}";
+	public static final String WORKSPACE_LOC = "${WORKSPACE_LOC}";
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	static {
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	/** Pairs of text to search and its replacement, applied in order. */
+	private final List<String[]> replacements = new ArrayList<>();
+
+	/** Workspace path used as base for include path entries, <code>null</code> to keep them. */
+	private final String includeBasePath;
+	private final String includePrefix;
+
+	private boolean changed;
+
+	private ProjectFileRewriter(String includeBasePath, String includePrefix) {
+		this.includeBasePath = includeBasePath;
+		this.includePrefix = includePrefix;
+	}
+
+	/**
+	 * The rewriter of the <code>.project</code> file: locations and builder
+	 * arguments are expressed relative to the project or the workspace.
+	 */
+	public static ProjectFileRewriter forProjectFile(IProject project) {
+		ProjectFileRewriter rewriter = new ProjectFileRewriter(null, null);
+		// the project is usually located in the workspace, so replace it first
+		rewriter.addReplacement(project.getLocation(), PROJECT_LOC);
+		rewriter.addReplacement(project.getWorkspace().getRoot().getLocation(), WORKSPACE_LOC);
+		return rewriter;
+	}
+
+	/**
+	 * The rewriter of the <code>.cproject</code> file: include path entries
+	 * within the project are stored relative to the project (CDT does not
+	 * resolve path variables in these entries).
+	 */
+	public static ProjectFileRewriter forCProjectFile(IProject project) {
+		return new ProjectFileRewriter(project.getFullPath().toString(),
+				project.getLocation().addTrailingSeparator().toString());
+	}
+
+	private void addReplacement(IPath location, String replacement) {
+		if (location == null) {
+			return;
+		}
+		String osString = location.toOSString();
+		replacements.add(new String[] { osString, replacement });
+		String portable = location.toString();
+		if (!portable.equals(osString)) {
+			replacements.add(new String[] { portable, replacement });
+		}
+	}
+
+	/**
+	 * Rewrites the file in place, if needed.
+	 * @return <code>true</code> if the file was written
+	 */
+	public boolean rewrite(IFile file, IProgressMonitor monitor) throws IOException, CoreException, XMLStreamException {
+		byte[] content = Files.readAllBytes(file.getLocation().toFile().toPath());
+		byte[] rewritten = rewrite(content);
+		if (rewritten == null) {
+			return false;
+		}
+		file.setContents(new ByteArrayInputStream(rewritten), IResource.FORCE, monitor);
+		ModificationJournal.instance().record(file);
+		return true;
+	}
+
+	/**
+	 * @return the rewritten content or <code>null</code> if nothing had to be replaced
+	 */
+	public synchronized byte[] rewrite(byte[] content) throws XMLStreamException, IOException {
+		if (!mayContainPaths(content)) {
+			return null;
+		}
+		changed = false;
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+		XMLEventReader reader = inputFactory.createXMLEventReader(new ByteArrayInputStream(content));
+		try {
+			Writer writer = null;
+			XMLStreamWriter xml = null;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartDocument()) {
+					StartDocument document = (StartDocument)event;
+					String encoding = document.encodingSet() ? document.getCharacterEncodingScheme() : "UTF-8";
+					writer = new OutputStreamWriter(out, encoding);
+					writeDeclaration(writer, document, encoding);
+					xml = outputFactory.createXMLStreamWriter(writer);
+					continue;
+				}
+				if (xml == null) {
+					writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+					xml = outputFactory.createXMLStreamWriter(writer);
+				}
+				write(event, reader, xml);
+			}
+			if (xml != null) {
+				xml.flush();
+				xml.close();
+				writer.flush();
+			}
+		} finally {
+			reader.close();
+		}
+		return changed ? out.toByteArray() : null;
+	}
+
+	private void write(XMLEvent event, XMLEventReader reader, XMLStreamWriter xml) throws XMLStreamException {
+		switch (event.getEventType()) {
+		case XMLEvent.START_ELEMENT:
+			StartElement start = event.asStartElement();
+			String prefix = start.getName().getPrefix();
+			String namespace = start.getName().getNamespaceURI();
+			String local = start.getName().getLocalPart();
+			// look ahead, so <a/> stays an empty element
+			if (reader.peek() != null && reader.peek().isEndElement()) {
+				reader.nextEvent();
+				xml.writeEmptyElement(prefix, local, namespace);
+			} else {
+				xml.writeStartElement(prefix, local, namespace);
+			}
+			for (Iterator<?> it = start.getNamespaces(); it.hasNext();) {
+				Namespace ns = (Namespace)it.next();
+				xml.writeNamespace(ns.getPrefix(), ns.getNamespaceURI());
+			}
+			writeAttributes(start, xml);
+			break;
+		case XMLEvent.END_ELEMENT:
+			xml.writeEndElement();
+			break;
+		case XMLEvent.CHARACTERS:
+		case XMLEvent.SPACE:
+			Characters characters = event.asCharacters();
+			if (characters.isCData()) {
+				xml.writeCData(replace(characters.getData()));
+			} else {
+				xml.writeCharacters(replace(characters.getData()));
+			}
+			break;
+		case XMLEvent.CDATA:
+			xml.writeCData(replace(event.asCharacters().getData()));
+			break;
+		case XMLEvent.COMMENT:
+			xml.writeComment(((Comment)event).getText());
+			break;
+		case XMLEvent.PROCESSING_INSTRUCTION:
+			ProcessingInstruction pi = (ProcessingInstruction)event;
+			xml.writeProcessingInstruction(pi.getTarget(), pi.getData());
+			break;
+		case XMLEvent.ENTITY_REFERENCE:
+			xml.writeEntityRef(((EntityReference)event).getName());
+			break;
+		case XMLEvent.END_DOCUMENT:
+			xml.writeEndDocument();
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void writeAttributes(StartElement start, XMLStreamWriter xml) throws XMLStreamException {
+		boolean relativeInclude = false;
+		if (includeBasePath != null && "pathentry".equals(start.getName().getLocalPart())) {
+			Attribute include = start.getAttributeByName(new QName("include"));
+			relativeInclude = include != null && include.getValue().startsWith(includePrefix)
+					&& start.getAttributeByName(new QName("base-path")) == null;
+		}
+		for (Iterator<?> it = start.getAttributes(); it.hasNext();) {
+			Attribute attribute = (Attribute)it.next();
+			String name = attribute.getName().getLocalPart();
+			String value = attribute.getValue();
+			if (relativeInclude && "include".equals(name)) {
+				xml.writeAttribute("base-path", includeBasePath);
+				value = value.substring(includePrefix.length());
+				changed = true;
+			} else {
+				value = replace(value);
+			}
+			String prefix = attribute.getName().getPrefix();
+			if (prefix.isEmpty()) {
+				xml.writeAttribute(name, value);
+			} else {
+				xml.writeAttribute(prefix, attribute.getName().getNamespaceURI(), name, value);
+			}
+		}
+	}
+
+	private String replace(String text) {
+		for (String[] replacement : replacements) {
+			if (text.contains(replacement[0])) {
+				text = text.replace(replacement[0], replacement[1]);
+				changed = true;
+			}
+		}
+		return text;
+	}
+
+	/**
+	 * Cheap check on the raw bytes, most files are already relative.
+	 */
+	private boolean mayContainPaths(byte[] content) {
+		if (includePrefix != null && indexOf(content, includePrefix.getBytes(StandardCharsets.UTF_8)) >= 0) {
+			return true;
+		}
+		for (String[] replacement : replacements) {
+			if (indexOf(content, replacement[0].getBytes(StandardCharsets.UTF_8)) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int indexOf(byte[] content, byte[] needle) {
+		if (needle.length == 0) {
+			return -1;
+		}
+		outer: for (int i = 0; i <= content.length - needle.length; i++) {
+			if (content[i] != needle[0]) {
+				continue;
+			}
+			for (int j = 1; j < needle.length; j++) {
+				if (content[i + j] != needle[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	private static void writeDeclaration(Writer writer, StartDocument document, String encoding) throws IOException {
+		writer.write("<?xml version=\"");
+		writer.write(document.getVersion() == null ? "1.0" : document.getVersion());
+		writer.write("\" encoding=\"");
+		writer.write(encoding);
+		writer.write('"');
+		if (document.standaloneSet()) {
+			writer.write(document.isStandalone() ? " standalone=\"yes\"" : " standalone=\"no\"");
+		}
+		writer.write("?>\n");
+	}
+
+}
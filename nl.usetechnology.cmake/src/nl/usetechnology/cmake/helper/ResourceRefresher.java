@@ -0,0 +1,91 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+
+import nl.usetechnology.cmake.event.ModificationJournal;
+
+/**
+ * Refreshes single files of a project instead of the whole project tree.
+ * Folders on the way to a file that are not yet known to the workspace are
+ * refreshed with depth zero first, so no sibling directories are walked.
+ */
+public class ResourceRefresher {
+
+	private final IProject project;
+	private final IPath projectLocation;
+	private final Set<IResource> refreshed = new HashSet<>();
+
+	public ResourceRefresher(IProject project) {
+		this.project = project;
+		this.projectLocation = project.getLocation().makeAbsolute();
+	}
+
+	/**
+	 * Maps a file system location into the project.
+	 * @return the file or <code>null</code> if it is located outside the project
+	 */
+	public IResource toResource(File file, boolean isFolder) {
+		IPath location = new Path(file.getAbsolutePath());
+		if (!projectLocation.isPrefixOf(location)) {
+			return null;
+		}
+		IPath relative = location.removeFirstSegments(projectLocation.segmentCount()).setDevice(null);
+		if (relative.isEmpty()) {
+			return project;
+		}
+		return isFolder ? project.getFolder(relative) : project.getFile(relative);
+	}
+
+	public void refresh(Collection<File> files, IProgressMonitor monitor) throws CoreException {
+		for (File file : files) {
+			IResource resource = toResource(file, false);
+			if (resource != null) {
+				refresh(resource, IResource.DEPTH_ZERO, monitor);
+			}
+		}
+	}
+
+	public void refresh(IResource resource, int depth, IProgressMonitor monitor) throws CoreException {
+		if (refreshed.contains(resource)) {
+			return;
+		}
+		Deque<IContainer> missingParents = new ArrayDeque<>();
+		IContainer parent = resource.getParent();
+		while (parent != null && parent.getType() != IResource.PROJECT && !parent.exists()) {
+			missingParents.push(parent);
+			parent = parent.getParent();
+		}
+		for (IContainer container : missingParents) {
+			if (refreshed.add(container)) {
+				container.refreshLocal(IResource.DEPTH_ZERO, monitor);
+			}
+		}
+		resource.refreshLocal(depth, monitor);
+		refreshed.add(resource);
+		if (resource.getType() == IResource.FILE && resource.exists()) {
+			// cmake wrote it on our behalf
+			ModificationJournal.instance().record(resource);
+		}
+	}
+
+	/**
+	 * @return the number of resources refreshed so far
+	 */
+	public int getRefreshedCount() {
+		return refreshed.size();
+	}
+
+}
@@ -2,36 +2,54 @@ package nl.usetechnology.cmake.helper;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+/**
+ * Splits a command line typed by the user (or found in a
+ * <code>compile_commands.json</code>) into arguments the way a shell would:
+ * whitespace separates arguments unless it is enclosed in double quotes. The
+ * quotes themselves are removed, <code>\"</code> stands for a literal quote.
+ * Other backslashes are kept, they are path separators on Windows.
+ */
 public class StringShellTokenizer {
 	
 	private static final String[] EMPTY_STRING_ARRAY = new String[0];
-	private static final Pattern SPACES = Pattern.compile("(?:\"|\\s+)");
 
-	
 	public static String[] tokenize(CharSequence sequence) {
-		Matcher m = SPACES.matcher(sequence);
+		List<String> items = tokenizeToList(sequence);
+		return items.toArray(EMPTY_STRING_ARRAY);
+	}
+
+	public static List<String> tokenizeToList(CharSequence sequence) {
 		List<String> items = new ArrayList<String>();
+		StringBuilder current = new StringBuilder();
+		// an argument can consist of quotes only: ""
+		boolean inArgument = false;
 		boolean inQuotes = false;
-		int lastPos = 0;
-		while(m.find()) {
-			int currentPos = m.start();
-			char currentChar = sequence.charAt(currentPos);
-			switch(currentChar) {
-			case '\"':
+		int length = sequence.length();
+		for (int i = 0; i < length; i++) {
+			char c = sequence.charAt(i);
+			if (c == '\\' && i + 1 < length && sequence.charAt(i + 1) == '"') {
+				current.append('"');
+				inArgument = true;
+				i++;
+			} else if (c == '"') {
 				inQuotes = !inQuotes;
-			break;
-			default:
-				if(!inQuotes) {
-					items.add(sequence.subSequence(lastPos, currentPos).toString());
-					lastPos = m.end();
+				inArgument = true;
+			} else if (Character.isWhitespace(c) && !inQuotes) {
+				if (inArgument) {
+					items.add(current.toString());
+					current.setLength(0);
+					inArgument = false;
 				}
+			} else {
+				current.append(c);
+				inArgument = true;
 			}
 		}
-		items.add(sequence.subSequence(lastPos, sequence.length()).toString());
-		return items.toArray(EMPTY_STRING_ARRAY);
+		if (inArgument) {
+			items.add(current.toString());
+		}
+		return items;
 	}
 	
 }
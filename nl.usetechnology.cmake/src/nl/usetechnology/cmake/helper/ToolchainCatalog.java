@@ -0,0 +1,261 @@
+package nl.usetechnology.cmake.helper;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+
+import nl.usetechnology.cmake.Activator;
+
+/**
+ * The toolchains available in the configured toolchain directory. The
+ * directory is listed once; a {@link WatchService} and the preference store
+ * tell the catalog when it has to be listed again.
+ */
+public class ToolchainCatalog {
+
+	public interface Listener {
+		/**
+		 * Called (on an arbitrary thread) after toolchains were added or
+		 * removed or the toolchain directory was changed.
+		 */
+		void toolchainsChanged();
+	}
+
+	private static ToolchainCatalog instance;
+
+	private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile Snapshot snapshot;
+
+	private WatchService watchService;
+
+	private Path watchedDirectory;
+
+	private final IPropertyChangeListener preferenceListener = new IPropertyChangeListener() {
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			if (Activator.PREF_STORE_TOOLCHAINS_KEY.equals(event.getProperty())) {
+				changed();
+			}
+		}
+	};
+
+	/**
+	 * Immutable result of listing the toolchain directory.
+	 */
+	private static class Snapshot {
+		final Path directory;
+		final boolean directoryExists;
+		final List<String> architectures;
+		final Map<String, Path> toolchainFiles;
+
+		Snapshot(Path directory, boolean directoryExists, List<String> architectures, Map<String, Path> toolchainFiles) {
+			this.directory = directory;
+			this.directoryExists = directoryExists;
+			this.architectures = architectures;
+			this.toolchainFiles = toolchainFiles;
+		}
+	}
+
+	public static synchronized ToolchainCatalog instance() {
+		if (instance == null) {
+			instance = new ToolchainCatalog();
+		}
+		return instance;
+	}
+
+	/**
+	 * Stops watching the toolchain directory. Called when the plug-in stops.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.dispose();
+			instance = null;
+		}
+	}
+
+	private ToolchainCatalog() {
+		Activator.getDefault().getPreferenceStore().addPropertyChangeListener(preferenceListener);
+	}
+
+	private synchronized void dispose() {
+		Activator.getDefault().getPreferenceStore().removePropertyChangeListener(preferenceListener);
+		stopWatching();
+		listeners.clear();
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the sorted names of the available toolchains
+	 */
+	public List<String> getArchitectures() {
+		return getSnapshot().architectures;
+	}
+
+	public boolean isAvailable(String architecture) {
+		return getSnapshot().toolchainFiles.containsKey(architecture);
+	}
+
+	/**
+	 * @return the absolute path of the toolchain file of the given architecture
+	 *         (which does not have to exist)
+	 */
+	public Path getToolchainFile(String architecture) {
+		Snapshot current = getSnapshot();
+		Path path = current.toolchainFiles.get(architecture);
+		if (path != null) {
+			return path;
+		}
+		return current.directory.resolve(toFileName(architecture)).toAbsolutePath();
+	}
+
+	public static String toFileName(String architecture) {
+		return "toolchain." + architecture + ".cmake";
+	}
+
+	private Snapshot getSnapshot() {
+		Snapshot current = snapshot;
+		if (current != null && (current.directoryExists || !isListable(current.directory))) {
+			return current;
+		}
+		boolean appeared = current != null;
+		synchronized (this) {
+			if (snapshot == current) {
+				snapshot = scan();
+				watch(snapshot);
+			}
+			current = snapshot;
+		}
+		if (appeared) {
+			// the toolchain directory has been created in the meantime
+			fireChanged();
+		}
+		return current;
+	}
+
+	private static Snapshot scan() {
+		Path directory = PluginDataIO.getPathToToolchains();
+		if (!isListable(directory)) {
+			return new Snapshot(directory, false, Collections.<String>emptyList(), Collections.<String, Path>emptyMap());
+		}
+		List<String> architectures = new ArrayList<>();
+		Map<String, Path> toolchainFiles = new HashMap<>();
+		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+			for (Path path : directoryStream) {
+				Matcher m = PluginDataIO.toolchainPattern.matcher(path.getFileName().toString());
+				if (m.matches()) {
+					architectures.add(m.group(1));
+					toolchainFiles.put(m.group(1), path.toAbsolutePath());
+				}
+			}
+		} catch (IOException e) {
+			Activator.logWarning("Unable to list toolchains in " + directory, e);
+		}
+		Collections.sort(architectures);
+		return new Snapshot(directory, true, Collections.unmodifiableList(architectures), Collections.unmodifiableMap(toolchainFiles));
+	}
+
+	/**
+	 * @return <code>false</code> if the directory does not exist or is not
+	 *         configured; the empty path would be the working directory
+	 */
+	private static boolean isListable(Path directory) {
+		return !directory.toString().isEmpty() && Files.isDirectory(directory);
+	}
+
+	private void watch(Snapshot current) {
+		if (!current.directoryExists) {
+			stopWatching();
+			return;
+		}
+		if (current.directory.equals(watchedDirectory) && watchService != null) {
+			return;
+		}
+		stopWatching();
+		try {
+			final WatchService service = current.directory.getFileSystem().newWatchService();
+			current.directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+			watchService = service;
+			watchedDirectory = current.directory;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					watch(service);
+				}
+			}, "CMake toolchain watcher");
+			thread.setDaemon(true);
+			thread.start();
+		} catch (IOException e) {
+			Activator.logWarning("Unable to watch toolchain directory " + current.directory, e);
+		}
+	}
+
+	private void watch(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				key.pollEvents();
+				boolean valid = key.reset();
+				changed();
+				if (!valid) {
+					// directory has been removed
+					return;
+				}
+			}
+		} catch (InterruptedException | ClosedWatchServiceException e) {
+			// watching stopped
+		}
+	}
+
+	private synchronized void stopWatching() {
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		watchService = null;
+		watchedDirectory = null;
+	}
+
+	private void changed() {
+		synchronized (this) {
+			snapshot = null;
+		}
+		fireChanged();
+	}
+
+	private void fireChanged() {
+		for (Listener listener : listeners) {
+			try {
+				listener.toolchainsChanged();
+			} catch (RuntimeException e) {
+				Activator.logError("Toolchain listener failed", e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package nl.usetechnology.cmake.menus;
+
+import org.eclipse.jface.action.ContributionItem;
+import org.eclipse.swt.widgets.Menu;
+
+import nl.usetechnology.cmake.menus.listeners.BulkSetupCMakeProjectsSelectionListener;
+
+/**
+ * Menu offered when the selection spans multiple projects.
+ */
+public class CMakeBulkContributionMenu extends ContributionItem {
+
+	private static MenuItemBuilder top;
+
+	public CMakeBulkContributionMenu() {
+		this(null);
+	}
+
+	public CMakeBulkContributionMenu(String id) {
+		super(id);
+	}
+
+	static {
+		top = new MenuItemBuilder("CMake");
+		top.add(new MenuItemBuilder("Refresh Selected Projects").setSelectionListener(new BulkSetupCMakeProjectsSelectionListener(false)));
+		top.add(new MenuItemBuilder("Refresh All CMake Projects").setSelectionListener(new BulkSetupCMakeProjectsSelectionListener(true)));
+	}
+
+	@Override
+	public void fill(Menu menu, int index) {
+		super.fill(menu, index);
+		top.fill(menu, index);
+	}
+
+}
@@ -7,7 +7,9 @@ import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Menu;
 
 import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.helper.ToolchainCatalog;
 import nl.usetechnology.cmake.menus.listeners.BuildTypeSelectionListener;
+import nl.usetechnology.cmake.menus.listeners.BulkSetupCMakeProjectsSelectionListener;
 import nl.usetechnology.cmake.menus.listeners.SetupCMakeProjectSelectionListener;
 import nl.usetechnology.cmake.menus.listeners.ToolchainSelectionListener;
 import nl.usetechnology.cmake.menus.selectors.BuildTypeSelector;
@@ -17,7 +19,14 @@ public class CMakeContributionMenu extends ContributionItem {
 
 	private MenuItemBuilder top;
 
-	private int toolchainsHash = 0;
+	private volatile boolean toolchainsChanged = false;
+
+	private final ToolchainCatalog.Listener toolchainListener = new ToolchainCatalog.Listener() {
+		@Override
+		public void toolchainsChanged() {
+			toolchainsChanged = true;
+		}
+	};
 	
 	public CMakeContributionMenu() {
 		this(null);
@@ -26,13 +35,16 @@ public class CMakeContributionMenu extends ContributionItem {
 
 	public CMakeContributionMenu(String id) {
 		super(id);
+		ToolchainCatalog.instance().addListener(toolchainListener);
 		refresh();
 	}
 
 	public void refresh()
 	{
+		toolchainsChanged = false;
 		top = new MenuItemBuilder("CMake");
 		top.add(new MenuItemBuilder("Refresh").setSelectionListener(new SetupCMakeProjectSelectionListener()));
+		top.add(new MenuItemBuilder("Refresh All CMake Projects").setSelectionListener(new BulkSetupCMakeProjectsSelectionListener(true)));
 		MenuItemBuilder buildConfigurations = new MenuItemBuilder("Build Configurations");
 		top.add(buildConfigurations);
 
@@ -55,17 +67,21 @@ public class CMakeContributionMenu extends ContributionItem {
 			toolchainItems.add(new MenuItemBuilder(" " + toolchain).setType(SWT.CHECK).setSelector(tcSelector).setSelectionListener(tcListener));
 		}
 		//top.add(new MenuItemBuilder("Cleanup").setSelectionListener(new CleanupCMakeProjectSelectionListener()));
-		toolchainsHash = toolchains.hashCode();
 	}
 	
 	@Override
 	public void fill(Menu menu, int index) {
-		List<String> toolchains = PluginDataIO.getToolchainArchitectures();
-		if (toolchainsHash != toolchains.hashCode()) {
+		if (toolchainsChanged) {
 			// refresh the menu (as the toolchains have been changed)
 			refresh();
 		}
 		top.fill(menu, index);
 	}
 
+	@Override
+	public void dispose() {
+		ToolchainCatalog.instance().removeListener(toolchainListener);
+		super.dispose();
+	}
+
 }
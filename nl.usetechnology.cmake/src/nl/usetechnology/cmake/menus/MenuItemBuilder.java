@@ -47,14 +47,14 @@ public class MenuItemBuilder {
 		
 		public void fill(Menu menu, int index) {
 			IProject project = ProjectExplorerExtensionContributionFactory.retrieveSelectedProject();
-			fill(menu, index, project);
+			fill(menu, index, ProjectMenuState.create(project));
 		}
 
-		protected void fill(Menu menu, IProject project) {
-			fill(menu, menu.getItemCount(), project);
+		protected void fill(Menu menu, ProjectMenuState state) {
+			fill(menu, menu.getItemCount(), state);
 		}
 
-		protected void fill(Menu menu, int index, IProject project) {
+		protected void fill(Menu menu, int index, ProjectMenuState state) {
 			MenuItem item;
 			if (!children.isEmpty()) {
 				item = new MenuItem(menu, type, index);
@@ -62,7 +62,7 @@ public class MenuItemBuilder {
 				item.setText(name);
 				item.setMenu(subMenu);
 				for (MenuItemBuilder descriptor : children) {
-					descriptor.fill(subMenu, project);
+					descriptor.fill(subMenu, state);
 				}
 			} else {
 				item = new MenuItem(menu, type, index);
@@ -72,7 +72,7 @@ public class MenuItemBuilder {
 				item.addSelectionListener(listener);
 			}
 			if(postProcessor != null) {
-				postProcessor.postProcess(this, item, project);
+				postProcessor.postProcess(this, item, state);
 			}
 			
 		}
@@ -1,5 +1,10 @@
 package nl.usetechnology.cmake.menus;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.eclipse.cdt.core.model.ICElement;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -25,7 +30,17 @@ public class ProjectExplorerExtensionContributionFactory extends
 	public void createContributionItems(IServiceLocator serviceLocator,
 			IContributionRoot additions) {
 		
-		IProject project = retrieveSelectedProject();
+		List<IProject> projects = retrieveSelectedProjects();
+		if(projects.size() > 1) {
+			for(IProject selected : projects) {
+				if(CMakeNature.isCMakeProject(selected)) {
+					additions.addContributionItem(new CMakeBulkContributionMenu(), null);
+					break;
+				}
+			}
+			return;
+		}
+		IProject project = projects.isEmpty() ? null : projects.get(0);
 		// Now check if project is a CMakeProject
 		if(CMakeNature.isCMakeProject(project)) {
 			additions.addContributionItem(new CMakeContributionMenu(), null);
@@ -33,8 +48,33 @@ public class ProjectExplorerExtensionContributionFactory extends
 			additions.addContributionItem(new CMakeSetupContributionMenu(), null);
 	}
 
+	/**
+	 * @return the selected project or <code>null</code> if the selection
+	 *         spans none or multiple projects
+	 */
 	public static IProject retrieveSelectedProject() {
-		IProject project = null;
+		List<IProject> projects = retrieveSelectedProjects();
+		if(projects.size() != 1) {
+			return null;
+		}
+		return projects.get(0);
+	}
+
+	/**
+	 * @return the selected projects carrying the CMake nature
+	 */
+	public static List<IProject> retrieveSelectedCMakeProjects() {
+		List<IProject> projects = new ArrayList<IProject>();
+		for(IProject project : retrieveSelectedProjects()) {
+			if(CMakeNature.isCMakeProject(project)) {
+				projects.add(project);
+			}
+		}
+		return projects;
+	}
+
+	public static List<IProject> retrieveSelectedProjects() {
+		Set<IProject> projects = new LinkedHashSet<IProject>();
 		ISelectionService selectionService = PlatformUI.getWorkbench().getActiveWorkbenchWindow().getSelectionService();
 		ISelection selection = selectionService.getSelection();
 		if(selection instanceof IStructuredSelection) {
@@ -48,16 +88,13 @@ public class ProjectExplorerExtensionContributionFactory extends
 				
 				if(obj instanceof IResource) {
 					IResource resource = (IResource) obj;
-					if(project == null) {
-						project = resource.getProject();
-					} else if(!project.equals(resource.getProject())) {
-						System.err.println("Multiple Projects");
-						return null;
+					if(resource.getProject() != null) {
+						projects.add(resource.getProject());
 					}
 				}
 			}
 		}
-		return project;
+		return new ArrayList<IProject>(projects);
 	}
 
 }
@@ -0,0 +1,72 @@
+package nl.usetechnology.cmake.menus;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+
+import nl.usetechnology.cmake.ProjectSettingsAccessor;
+import nl.usetechnology.cmake.helper.PluginDataIO;
+
+/**
+ * Immutable CMake state of a project, computed once per menu fill. The
+ * {@link MenuItemPostProcessor}s read from it instead of querying the
+ * project for every single menu item.
+ */
+public class ProjectMenuState {
+
+	private final IProject project;
+	private final String toolchain;
+	private final String buildType;
+	private final List<String> toolchains;
+	private final List<String> buildTypes;
+
+	private ProjectMenuState(IProject project, String toolchain, String buildType, List<String> toolchains, List<String> buildTypes) {
+		this.project = project;
+		this.toolchain = toolchain;
+		this.buildType = buildType;
+		this.toolchains = toolchains;
+		this.buildTypes = buildTypes;
+	}
+
+	public static ProjectMenuState create(IProject project) {
+		List<String> toolchains = PluginDataIO.getToolchainArchitectures();
+		List<String> buildTypes = Collections.unmodifiableList(PluginDataIO.getBuildTypes());
+		if (project == null) {
+			return new ProjectMenuState(null, null, null, toolchains, buildTypes);
+		}
+		String toolchain = ProjectSettingsAccessor.retrieveToolchain(project);
+		String buildType = ProjectSettingsAccessor.retrieveBuildType(project, toolchain);
+		return new ProjectMenuState(project, toolchain, buildType, toolchains, buildTypes);
+	}
+
+	/**
+	 * @return the selected project or <code>null</code>
+	 */
+	public IProject getProject() {
+		return project;
+	}
+
+	/**
+	 * @return the active toolchain or <code>null</code> if no project is selected
+	 */
+	public String getToolchain() {
+		return toolchain;
+	}
+
+	/**
+	 * @return the active build type or <code>null</code> if no project is selected
+	 */
+	public String getBuildType() {
+		return buildType;
+	}
+
+	public List<String> getToolchains() {
+		return toolchains;
+	}
+
+	public List<String> getBuildTypes() {
+		return buildTypes;
+	}
+
+}
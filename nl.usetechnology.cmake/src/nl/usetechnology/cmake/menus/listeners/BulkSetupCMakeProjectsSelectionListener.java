@@ -0,0 +1,38 @@
+package nl.usetechnology.cmake.menus.listeners;
+
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+
+import nl.usetechnology.cmake.CMakeBulkSetupJob;
+import nl.usetechnology.cmake.menus.ProjectExplorerExtensionContributionFactory;
+
+public class BulkSetupCMakeProjectsSelectionListener extends SelectionAdapter {
+
+	private final boolean allProjects;
+
+	/**
+	 * @param allProjects <code>true</code> to refresh every CMake project of the
+	 *        workspace, <code>false</code> to refresh the selected ones
+	 */
+	public BulkSetupCMakeProjectsSelectionListener(boolean allProjects) {
+		this.allProjects = allProjects;
+	}
+
+	@Override
+	public void widgetSelected(SelectionEvent e) {
+		List<IProject> projects;
+		if (allProjects) {
+			projects = CMakeBulkSetupJob.getCMakeProjects();
+		} else {
+			projects = ProjectExplorerExtensionContributionFactory.retrieveSelectedCMakeProjects();
+		}
+		if (projects.isEmpty()) {
+			return;
+		}
+		new CMakeBulkSetupJob(projects).schedule();
+	}
+
+}
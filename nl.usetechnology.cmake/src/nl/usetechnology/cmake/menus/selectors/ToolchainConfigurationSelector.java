@@ -1,17 +1,17 @@
 package nl.usetechnology.cmake.menus.selectors;
 
-import org.eclipse.core.resources.IProject;
 import org.eclipse.swt.widgets.MenuItem;
 
-import nl.usetechnology.cmake.ProjectSettingsAccessor;
 import nl.usetechnology.cmake.menus.MenuItemBuilder;
 import nl.usetechnology.cmake.menus.MenuItemPostProcessor;
+import nl.usetechnology.cmake.menus.ProjectMenuState;
 
 public class ToolchainConfigurationSelector implements MenuItemPostProcessor {
 
 	@Override
-	public void postProcess(MenuItemBuilder builder, MenuItem item, IProject project) {
-		if(builder.getName().endsWith(ProjectSettingsAccessor.retrieveToolchain(project))) {
+	public void postProcess(MenuItemBuilder builder, MenuItem item, ProjectMenuState state) {
+		String active = state.getToolchain();
+		if (active != null && builder.getName().endsWith(active)) {
 			item.setSelection(true);
 		} else {
 			item.setSelection(false);
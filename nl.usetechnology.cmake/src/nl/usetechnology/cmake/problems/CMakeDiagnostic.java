@@ -0,0 +1,49 @@
+package nl.usetechnology.cmake.problems;
+
+/**
+ * An error or warning reported by cmake while configuring, e.g.
+ * <code>CMake Error at src/CMakeLists.txt:12 (add_executable):</code>.
+ */
+public class CMakeDiagnostic {
+
+	private final boolean error;
+	private final String file;
+	private final int line;
+	private final String message;
+
+	public CMakeDiagnostic(boolean error, String file, int line, String message) {
+		this.error = error;
+		this.file = file;
+		this.line = line;
+		this.message = message;
+	}
+
+	public boolean isError() {
+		return error;
+	}
+
+	/**
+	 * @return the file as printed by cmake (relative to the source directory
+	 *         or absolute), <code>null</code> if the diagnostic has no location
+	 */
+	public String getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the line number, 0 if unknown
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return (error ? "Error" : "Warning") + (file == null ? "" : " at " + file + ":" + line) + ": " + message;
+	}
+
+}
@@ -0,0 +1,172 @@
+package nl.usetechnology.cmake.problems;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nl.usetechnology.cmake.console.LineConsumer;
+
+/**
+ * Recognizes the diagnostics in the error output of cmake while it arrives.
+ * A diagnostic is a header line like
+ * <code>CMake Warning (dev) at CMakeLists.txt:3 (project):</code> followed by
+ * indented message lines, empty lines and an optional call stack.
+ * <p>
+ * All lines are forwarded to the delegate, except for the warning about the
+ * build directory being a subdirectory of the source directory: the plugin
+ * always builds in <code>bin/&lt;arch&gt;</code>. Only the lines of a block
+ * whose message has not started yet are held back, so the memory used does
+ * not depend on the amount of output.
+ */
+public class CMakeDiagnosticsParser implements LineConsumer {
+
+	public interface Listener {
+		/**
+		 * Called on the thread reading the output, as soon as a diagnostic is complete.
+		 */
+		void diagnostic(CMakeDiagnostic diagnostic);
+	}
+
+	private static final String SEVERITIES = "(Error|Warning|Deprecation Warning|Deprecation Error)(?: \\(dev\\))?";
+
+	private static final Pattern LOCATED_HEADER = Pattern.compile("CMake " + SEVERITIES + " (?:at|in) (.+?)(?::(\\d+))?(?: \\([^)]*\\))?:");
+
+	private static final Pattern UNLOCATED_HEADER = Pattern.compile("CMake " + SEVERITIES + ":\\s*(.*)");
+
+	private static final String CALL_STACK = "Call Stack (most recent call first):";
+
+	private static final String DEV_WARNING_TRAILER = "This warning is for project developers.";
+
+	private static final String SUBDIRECTORY_WARNING = "The build directory is a subdirectory";
+
+	private static final int MAX_MESSAGE_LENGTH = 2000;
+
+	private static final int MAX_PENDING_LINES = 50;
+
+	private final LineConsumer delegate;
+	private final Listener listener;
+
+	private boolean inBlock = false;
+	private boolean error;
+	private String file;
+	private int line;
+	private final StringBuilder message = new StringBuilder();
+	private boolean messageComplete;
+	/** <code>null</code> as long as the message has not started. */
+	private Boolean suppressed;
+	private final List<String> pending = new ArrayList<>();
+
+	public CMakeDiagnosticsParser(LineConsumer delegate, Listener listener) {
+		this.delegate = delegate;
+		this.listener = listener;
+	}
+
+	@Override
+	public void accept(String text) {
+		if (inBlock) {
+			if (isBlockLine(text)) {
+				acceptBlockLine(text);
+				return;
+			}
+			finishBlock();
+		}
+		if (text.startsWith("CMake ") && startBlock(text)) {
+			return;
+		}
+		delegate.accept(text);
+	}
+
+	private static boolean isBlockLine(String text) {
+		return text.isEmpty() || Character.isWhitespace(text.charAt(0)) || text.startsWith(CALL_STACK)
+				|| text.startsWith(DEV_WARNING_TRAILER);
+	}
+
+	private boolean startBlock(String text) {
+		String firstMessageLine = null;
+		Matcher m = LOCATED_HEADER.matcher(text);
+		if (m.matches()) {
+			file = m.group(2);
+			line = m.group(3) == null ? 0 : Integer.parseInt(m.group(3));
+		} else {
+			m = UNLOCATED_HEADER.matcher(text);
+			if (!m.matches()) {
+				return false;
+			}
+			file = null;
+			line = 0;
+			firstMessageLine = m.group(2);
+		}
+		inBlock = true;
+		error = m.group(1).endsWith("Error");
+		message.setLength(0);
+		messageComplete = false;
+		suppressed = null;
+		pending.add(text);
+		if (firstMessageLine != null && !firstMessageLine.isEmpty()) {
+			appendMessage(firstMessageLine);
+		}
+		return true;
+	}
+
+	private void acceptBlockLine(String text) {
+		if (text.startsWith(CALL_STACK) || text.startsWith(DEV_WARNING_TRAILER)) {
+			messageComplete = true;
+		} else if (!messageComplete) {
+			String trimmed = text.trim();
+			if (!trimmed.isEmpty()) {
+				appendMessage(trimmed);
+			}
+		}
+		if (suppressed == null && (message.length() > 0 || messageComplete || pending.size() >= MAX_PENDING_LINES)) {
+			decide();
+		}
+		if (suppressed == null) {
+			pending.add(text);
+		} else if (!suppressed) {
+			delegate.accept(text);
+		}
+	}
+
+	private void appendMessage(String text) {
+		if (message.length() >= MAX_MESSAGE_LENGTH) {
+			return;
+		}
+		if (message.length() > 0) {
+			message.append(' ');
+		}
+		message.append(text, 0, Math.min(text.length(), MAX_MESSAGE_LENGTH - message.length()));
+	}
+
+	/**
+	 * Decides whether the block is shown, the held back lines are forwarded if so.
+	 */
+	private void decide() {
+		suppressed = message.indexOf(SUBDIRECTORY_WARNING) == 0;
+		if (!suppressed) {
+			for (String text : pending) {
+				delegate.accept(text);
+			}
+		}
+		pending.clear();
+	}
+
+	private void finishBlock() {
+		if (suppressed == null) {
+			decide();
+		}
+		if (!suppressed) {
+			listener.diagnostic(new CMakeDiagnostic(error, file, line, message.toString()));
+		}
+		inBlock = false;
+	}
+
+	@Override
+	public void close() {
+		if (inBlock) {
+			finishBlock();
+		}
+		delegate.close();
+	}
+
+}
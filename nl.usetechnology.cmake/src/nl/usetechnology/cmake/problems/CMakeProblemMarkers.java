@@ -0,0 +1,195 @@
+package nl.usetechnology.cmake.problems;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+
+import nl.usetechnology.cmake.Activator;
+
+/**
+ * Keeps the problem markers of a project in sync with the diagnostics of one
+ * configure run. Diagnostics are turned into markers while cmake is still
+ * running; the output pump threads only queue them, the markers are created
+ * by a job. A marker that is reported again is kept as it is.
+ * <p>
+ * Stale markers are removed only from the files cmake evaluated again, the
+ * markers of all other files stay untouched.
+ */
+public class CMakeProblemMarkers implements CMakeDiagnosticsParser.Listener {
+
+	public static final String MARKER_TYPE = Activator.PLUGIN_ID + ".problem";
+
+	/** Queued after the last diagnostic of the run. */
+	private static class Finish {
+		final Collection<File> evaluatedFiles;
+
+		Finish(Collection<File> evaluatedFiles) {
+			this.evaluatedFiles = evaluatedFiles;
+		}
+	}
+
+	private final IProject project;
+
+	private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+
+	/** The markers found on a resource when it was first reported, by {@link #getKey}. */
+	private final Map<IResource, Map<String, IMarker>> previousMarkers = new HashMap<>();
+
+	private final WorkspaceJob job;
+
+	public CMakeProblemMarkers(IProject project) {
+		this.project = project;
+		job = new WorkspaceJob("Updating CMake problems of " + project.getName()) {
+			@Override
+			public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException {
+				applyQueued();
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.setRule(ResourcesPlugin.getWorkspace().getRuleFactory().markerRule(project));
+	}
+
+	@Override
+	public void diagnostic(CMakeDiagnostic diagnostic) {
+		queue.add(diagnostic);
+		job.schedule();
+	}
+
+	/**
+	 * Called after cmake terminated.
+	 * @param evaluatedFiles the files cmake read during the run, <code>null</code>
+	 *        if unknown (e.g. after a failed run)
+	 */
+	public void finish(Collection<File> evaluatedFiles) {
+		queue.add(new Finish(evaluatedFiles));
+		job.schedule();
+	}
+
+	private synchronized void applyQueued() throws CoreException {
+		Object item;
+		while ((item = queue.poll()) != null) {
+			if (item instanceof Finish) {
+				removeStaleMarkers(((Finish) item).evaluatedFiles);
+			} else {
+				addMarker((CMakeDiagnostic) item);
+			}
+		}
+	}
+
+	private void addMarker(CMakeDiagnostic diagnostic) throws CoreException {
+		IResource resource = diagnostic.getFile() == null ? project : toResource(toFile(diagnostic.getFile()));
+		if (resource == null) {
+			// outside of the project, e.g. a toolchain file
+			resource = project;
+		}
+		Map<String, IMarker> previous = previousMarkers.get(resource);
+		if (previous == null) {
+			previous = new HashMap<>();
+			for (IMarker marker : resource.findMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO)) {
+				previous.put(getKey(marker), marker);
+			}
+			previousMarkers.put(resource, previous);
+		}
+		String key = getKey(diagnostic, resource);
+		if (previous.remove(key) != null) {
+			// reported again, the existing marker stays
+			return;
+		}
+		IMarker marker = resource.createMarker(MARKER_TYPE);
+		marker.setAttributes(new String[] { IMarker.SEVERITY, IMarker.MESSAGE, IMarker.LINE_NUMBER, IMarker.LOCATION },
+				new Object[] { diagnostic.isError() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING,
+						getMessage(diagnostic, resource), Math.max(1, diagnostic.getLine()), getLocation(diagnostic) });
+	}
+
+	private void removeStaleMarkers(Collection<File> evaluatedFiles) throws CoreException {
+		for (Map<String, IMarker> stale : previousMarkers.values()) {
+			for (IMarker marker : stale.values()) {
+				marker.delete();
+			}
+		}
+		Set<IResource> evaluated = new HashSet<>();
+		// diagnostics without a location belong to the run as a whole
+		evaluated.add(project);
+		if (evaluatedFiles != null) {
+			for (File file : evaluatedFiles) {
+				IResource resource = toResource(file);
+				if (resource != null) {
+					evaluated.add(resource);
+				}
+			}
+		}
+		evaluated.removeAll(previousMarkers.keySet());
+		for (IResource resource : evaluated) {
+			if (resource.exists()) {
+				resource.deleteMarkers(MARKER_TYPE, false, IResource.DEPTH_ZERO);
+			}
+		}
+		previousMarkers.clear();
+	}
+
+	private File toFile(String path) {
+		File file = new File(path);
+		if (!file.isAbsolute()) {
+			// cmake prints the files of the source tree relative to it
+			file = new File(project.getLocation().toFile(), path);
+		}
+		return file;
+	}
+
+	/**
+	 * @return the existing file of the project or <code>null</code>
+	 */
+	private IResource toResource(File file) {
+		IPath projectLocation = project.getLocation();
+		IPath location = Path.fromOSString(file.getAbsolutePath());
+		if (projectLocation == null || !projectLocation.isPrefixOf(location)) {
+			return null;
+		}
+		IResource resource = project.getFile(location.removeFirstSegments(projectLocation.segmentCount()));
+		return resource.exists() ? resource : null;
+	}
+
+	private static String getLocation(CMakeDiagnostic diagnostic) {
+		return diagnostic.getFile() == null ? "" : diagnostic.getFile() + ":" + diagnostic.getLine();
+	}
+
+	/**
+	 * Diagnostics of files outside of the project end up on the project, their
+	 * message names the file.
+	 */
+	private String getMessage(CMakeDiagnostic diagnostic, IResource resource) {
+		if (resource == project && diagnostic.getFile() != null) {
+			return getLocation(diagnostic) + ": " + diagnostic.getMessage();
+		}
+		return diagnostic.getMessage();
+	}
+
+	private String getKey(CMakeDiagnostic diagnostic, IResource resource) {
+		int severity = diagnostic.isError() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING;
+		return severity + ":" + Math.max(1, diagnostic.getLine()) + ":" + getMessage(diagnostic, resource);
+	}
+
+	private static String getKey(IMarker marker) {
+		return marker.getAttribute(IMarker.SEVERITY, -1) + ":" + marker.getAttribute(IMarker.LINE_NUMBER, -1) + ":"
+				+ marker.getAttribute(IMarker.MESSAGE, "");
+	}
+
+}
@@ -0,0 +1,386 @@
+package nl.usetechnology.cmake.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.Platform;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.console.LineConsumer;
+
+/**
+ * Reads stdout and stderr of all running cmake processes with a small, fixed
+ * number of threads, instead of two threads per process. Every pump thread
+ * services several processes by polling the available bytes of their
+ * streams. Pump threads terminate after being idle for a while.
+ */
+public class ProcessOutputPump {
+
+	private static final int MAX_PUMP_THREADS = 2;
+
+	private static final long IDLE_SLEEP_MS = 10;
+
+	private static final long IDLE_TIMEOUT_MS = 5000;
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/**
+	 * Time the streams may stay silent after the process exited before they
+	 * are considered complete. A grandchild that inherited the pipe could
+	 * otherwise keep them open for as long as it runs.
+	 */
+	private static final long DRAIN_TIMEOUT_MS = 200;
+
+	/**
+	 * Whether reading a stream after the exit of the process returns at once.
+	 * Except on Windows the JDK drains and closes the pipes once the process
+	 * has exited, so EOF is read without waiting for the drain timeout.
+	 */
+	private static final boolean EOF_AFTER_EXIT = !Platform.OS_WIN32.equals(Platform.getOS());
+
+	/** Longer lines are split, so a line without terminator cannot grow without bounds. */
+	private static final int MAX_LINE_BYTES = 64 * 1024;
+
+	private static final ProcessOutputPump instance = new ProcessOutputPump();
+
+	private final AtomicInteger activeProcesses = new AtomicInteger();
+
+	private final AtomicInteger activePumpThreads = new AtomicInteger();
+
+	private final Pump[] pumps = new Pump[MAX_PUMP_THREADS];
+
+	public static ProcessOutputPump instance() {
+		return instance;
+	}
+
+	private ProcessOutputPump() {
+		for (int i = 0; i < pumps.length; i++) {
+			pumps[i] = new Pump("CMake output pump " + (i + 1));
+		}
+	}
+
+	/**
+	 * Feeds the output of the process to the given consumers and waits until
+	 * the process has terminated and both streams have been read completely.
+	 * @return the exit value of the process
+	 */
+	public int waitFor(Process process, LineConsumer out, LineConsumer err) throws InterruptedException {
+		PumpedProcess pumped = new PumpedProcess(process, out, err);
+		activeProcesses.incrementAndGet();
+		try {
+			leastLoadedPump().add(pumped);
+			return pumped.awaitCompletion();
+		} finally {
+			activeProcesses.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of processes whose output is currently pumped
+	 */
+	public int getActiveProcessCount() {
+		return activeProcesses.get();
+	}
+
+	/**
+	 * @return the number of pump threads currently alive
+	 */
+	public int getActivePumpThreadCount() {
+		return activePumpThreads.get();
+	}
+
+	private Pump leastLoadedPump() {
+		Pump result = pumps[0];
+		for (Pump pump : pumps) {
+			if (pump.size() < result.size()) {
+				result = pump;
+			}
+		}
+		return result;
+	}
+
+	private class Pump implements Runnable {
+		private final String name;
+		private final List<PumpedProcess> processes = new ArrayList<>();
+		private boolean running = false;
+
+		Pump(String name) {
+			this.name = name;
+		}
+
+		synchronized int size() {
+			return processes.size();
+		}
+
+		synchronized void add(PumpedProcess process) {
+			processes.add(process);
+			if (!running) {
+				running = true;
+				activePumpThreads.incrementAndGet();
+				Thread thread = new Thread(this, name);
+				thread.setDaemon(true);
+				thread.start();
+			} else {
+				notifyAll();
+			}
+		}
+
+		@Override
+		public void run() {
+			List<PumpedProcess> snapshot = new ArrayList<>();
+			try {
+				while (true) {
+					synchronized (this) {
+						if (processes.isEmpty()) {
+							wait(IDLE_TIMEOUT_MS);
+							if (processes.isEmpty()) {
+								running = false;
+								activePumpThreads.decrementAndGet();
+								return;
+							}
+						}
+						snapshot.clear();
+						snapshot.addAll(processes);
+					}
+					boolean progress = false;
+					for (PumpedProcess process : snapshot) {
+						progress |= process.pump();
+						if (process.isFinished()) {
+							synchronized (this) {
+								processes.remove(process);
+							}
+							process.complete();
+						}
+					}
+					if (!progress) {
+						Thread.sleep(IDLE_SLEEP_MS);
+					}
+				}
+			} catch (InterruptedException e) {
+				synchronized (this) {
+					running = false;
+					activePumpThreads.decrementAndGet();
+					for (PumpedProcess process : processes) {
+						process.complete();
+					}
+					processes.clear();
+				}
+			}
+		}
+	}
+
+	private static class PumpedProcess {
+		private final Process process;
+		private final StreamPump out;
+		private final StreamPump err;
+		private final CountDownLatch finished = new CountDownLatch(1);
+		/** When the streams were found silent after the exit of the process, -1 if not (yet). */
+		private long quietSince = -1;
+
+		PumpedProcess(Process process, LineConsumer out, LineConsumer err) {
+			this.process = process;
+			this.out = new StreamPump(process.getInputStream(), out);
+			this.err = new StreamPump(process.getErrorStream(), err);
+		}
+
+		/**
+		 * @return <code>true</code> if any data has been read
+		 */
+		boolean pump() {
+			boolean progress = out.pump() | err.pump();
+			if (progress) {
+				quietSince = -1;
+			} else if (!isFinished() && hasExited()) {
+				// never block the shared thread waiting for EOF of a pipe that is
+				// still open; on Windows only the silence tells it is complete
+				long now = System.currentTimeMillis();
+				if (quietSince < 0) {
+					// one more round, so the JDK has drained the pipes by now
+					quietSince = now;
+				} else if (EOF_AFTER_EXIT) {
+					progress = out.readEndOfStream() | err.readEndOfStream();
+				} else if (now - quietSince >= DRAIN_TIMEOUT_MS) {
+					out.close();
+					err.close();
+				}
+			}
+			return progress;
+		}
+
+		boolean isFinished() {
+			return out.isClosed() && err.isClosed();
+		}
+
+		private boolean hasExited() {
+			try {
+				process.exitValue();
+				return true;
+			} catch (IllegalThreadStateException e) {
+				return false;
+			}
+		}
+
+		void complete() {
+			out.close();
+			err.close();
+			finished.countDown();
+		}
+
+		int awaitCompletion() throws InterruptedException {
+			finished.await();
+			// the streams may reach EOF shortly before the process terminates
+			return process.waitFor();
+		}
+	}
+
+	/**
+	 * Splits the bytes of a stream into lines. Splitting happens on byte
+	 * level, which is safe for ASCII compatible encodings, and every line is
+	 * decoded only once.
+	 */
+	private static class StreamPump {
+		private final InputStream in;
+		private final LineConsumer consumer;
+		private final byte[] buffer = new byte[READ_BUFFER_SIZE];
+		private byte[] line = new byte[256];
+		private int lineLength = 0;
+		private boolean closed = false;
+
+		StreamPump(InputStream in, LineConsumer consumer) {
+			this.in = in;
+			this.consumer = consumer;
+		}
+
+		boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * Reads what is available without blocking.
+		 * @return <code>true</code> if any data has been read
+		 */
+		boolean pump() {
+			if (closed) {
+				return false;
+			}
+			try {
+				int length = Math.min(in.available(), buffer.length);
+				if (length <= 0) {
+					return false;
+				}
+				int read = in.read(buffer, 0, length);
+				if (read < 0) {
+					close();
+					return true;
+				}
+				split(read);
+				return true;
+			} catch (IOException e) {
+				Activator.logWarning("Unable to read cmake output", e);
+				close();
+				return true;
+			}
+		}
+
+		/**
+		 * Reads once the process has exited and nothing is available, which
+		 * returns EOF at once if the JDK has drained the pipe.
+		 * @return <code>true</code> if any data has been read
+		 */
+		boolean readEndOfStream() {
+			if (closed) {
+				return false;
+			}
+			try {
+				int read = in.read(buffer, 0, buffer.length);
+				if (read < 0) {
+					close();
+					return false;
+				}
+				split(read);
+				return true;
+			} catch (IOException e) {
+				Activator.logWarning("Unable to read cmake output", e);
+				close();
+				return false;
+			}
+		}
+
+		private void split(int read) {
+			for (int i = 0; i < read; i++) {
+				byte b = buffer[i];
+				if (b == '\n') {
+					emitLine();
+				} else {
+					if (lineLength == MAX_LINE_BYTES) {
+						emitLine(getSplitPosition(b));
+					}
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_BYTES));
+					}
+					line[lineLength++] = b;
+				}
+			}
+		}
+
+		/**
+		 * @param next the byte following the full line
+		 * @return where to split the full line without cutting a UTF-8
+		 *         encoded character in half
+		 */
+		private int getSplitPosition(byte next) {
+			if ((next & 0xC0) != 0x80) {
+				// not a continuation byte, the character starts with it
+				return lineLength;
+			}
+			int position = lineLength;
+			while (position > 0 && lineLength - position < 3 && (line[position - 1] & 0xC0) == 0x80) {
+				position--;
+			}
+			if (position > 0 && (line[position - 1] & 0xC0) == 0xC0) {
+				return position - 1;
+			}
+			// no UTF-8 sequence
+			return lineLength;
+		}
+
+		private void emitLine() {
+			emitLine(lineLength);
+		}
+
+		/**
+		 * Emits the first bytes of the line, the remaining ones start the next line.
+		 */
+		private void emitLine(int end) {
+			int length = end;
+			if (length > 0 && line[length - 1] == '\r') {
+				length--;
+			}
+			consumer.accept(new String(line, 0, length));
+			System.arraycopy(line, end, line, 0, lineLength - end);
+			lineLength -= end;
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (lineLength > 0) {
+				emitLine();
+			}
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			consumer.close();
+		}
+	}
+
+}
@@ -0,0 +1,292 @@
+package nl.usetechnology.cmake.settings;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.core.settings.model.CIncludePathEntry;
+import org.eclipse.cdt.core.settings.model.CMacroEntry;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.helper.JsonReader;
+import nl.usetechnology.cmake.helper.StringShellTokenizer;
+
+/**
+ * The include paths and macros per source file, as found in the
+ * <code>compile_commands.json</code> of a build directory.
+ * <p>
+ * Most files of a target are compiled with the same flags, so the entry lists
+ * are interned: files with equal settings share one list instance, also
+ * across reloads and build directories. The file is parsed again when its
+ * time stamp or size changes; unchanged settings keep their interned lists.
+ */
+public class CompileCommandsDatabase {
+
+	public static final String FILE_NAME = "compile_commands.json";
+
+	/** Minimal interval between two checks of the file on disk. */
+	private static final long CHECK_INTERVAL = 1000;
+
+	private static final Map<File, CompileCommandsDatabase> cache = new ConcurrentHashMap<>();
+
+	private static final Map<List<ICLanguageSettingEntry>, WeakReference<List<ICLanguageSettingEntry>>> listPool = new WeakHashMap<>();
+	private static final Map<ICLanguageSettingEntry, WeakReference<ICLanguageSettingEntry>> entryPool = new WeakHashMap<>();
+
+	private final long lastModified;
+	private final long length;
+	private volatile long lastCheck;
+
+	/** Settings by absolute path of the source file. */
+	private final Map<String, List<ICLanguageSettingEntry>> entriesByFile;
+
+	private CompileCommandsDatabase(long lastModified, long length, Map<String, List<ICLanguageSettingEntry>> entriesByFile) {
+		this.lastModified = lastModified;
+		this.length = length;
+		this.entriesByFile = entriesByFile;
+		this.lastCheck = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the database of the build directory or <code>null</code> if
+	 *         cmake did not export the compile commands there
+	 */
+	public static CompileCommandsDatabase get(File buildDirectory) {
+		return get(buildDirectory, false);
+	}
+
+	/**
+	 * Like {@link #get(File)}, but checks the file on disk immediately.
+	 */
+	public static CompileCommandsDatabase reload(File buildDirectory) {
+		return get(buildDirectory, true);
+	}
+
+	/**
+	 * @return the database as last read, without looking at the file on disk
+	 */
+	public static CompileCommandsDatabase getCached(File buildDirectory) {
+		return cache.get(new File(buildDirectory, FILE_NAME));
+	}
+
+	private static CompileCommandsDatabase get(File buildDirectory, boolean force) {
+		File file = new File(buildDirectory, FILE_NAME);
+		CompileCommandsDatabase database = cache.get(file);
+		long now = System.currentTimeMillis();
+		if (database != null && !force && now - database.lastCheck < CHECK_INTERVAL) {
+			return database;
+		}
+		long lastModified = file.lastModified();
+		long length = file.length();
+		if (lastModified == 0) {
+			cache.remove(file);
+			return null;
+		}
+		if (database != null && database.lastModified == lastModified && database.length == length) {
+			database.lastCheck = now;
+			return database;
+		}
+		try {
+			database = new CompileCommandsDatabase(lastModified, length, read(file));
+			cache.put(file, database);
+			return database;
+		} catch (IOException e) {
+			Activator.logWarning("Unable to read " + file, e);
+			cache.remove(file);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the settings of the source file or <code>null</code> if the file is not compiled
+	 */
+	public List<ICLanguageSettingEntry> getEntries(File source) {
+		return entriesByFile.get(source.getAbsolutePath());
+	}
+
+	/**
+	 * @param newer the database read later, <code>null</code> if the file was removed
+	 * @return the absolute paths of the source files whose settings differ
+	 */
+	public Set<String> diff(CompileCommandsDatabase newer) {
+		Map<String, List<ICLanguageSettingEntry>> after = newer == null
+				? Collections.<String, List<ICLanguageSettingEntry>>emptyMap() : newer.entriesByFile;
+		Set<String> changed = new HashSet<>();
+		for (Map.Entry<String, List<ICLanguageSettingEntry>> entry : entriesByFile.entrySet()) {
+			// interned, unchanged settings are the same instance
+			List<ICLanguageSettingEntry> entries = after.get(entry.getKey());
+			if (entries != entry.getValue() && !entry.getValue().equals(entries)) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String source : after.keySet()) {
+			if (!entriesByFile.containsKey(source)) {
+				changed.add(source);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return the number of source files in the database
+	 */
+	public int getFileCount() {
+		return entriesByFile.size();
+	}
+
+	private static Map<String, List<ICLanguageSettingEntry>> read(File file) throws IOException {
+		Map<String, List<ICLanguageSettingEntry>> entriesByFile = new HashMap<>();
+		// the same command line is typically repeated for all files of a target
+		Map<String, List<ICLanguageSettingEntry>> entriesByCommand = new HashMap<>();
+		try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			reader.beginArray();
+			while (reader.hasNext()) {
+				String directory = null;
+				String source = null;
+				String command = null;
+				List<String> arguments = null;
+				reader.beginObject();
+				while (reader.hasNext()) {
+					String name = reader.nextName();
+					switch (name) {
+					case "directory":
+						directory = reader.nextString();
+						break;
+					case "file":
+						source = reader.nextString();
+						break;
+					case "command":
+						command = reader.nextString();
+						break;
+					case "arguments":
+						arguments = new ArrayList<>();
+						reader.beginArray();
+						while (reader.hasNext()) {
+							arguments.add(reader.nextString());
+						}
+						reader.endArray();
+						break;
+					default:
+						reader.skipValue();
+						break;
+					}
+				}
+				reader.endObject();
+				if (source == null || directory == null || (command == null && arguments == null)) {
+					continue;
+				}
+				File sourceFile = new File(source);
+				if (!sourceFile.isAbsolute()) {
+					sourceFile = new File(directory, source);
+				}
+				String key = directory + '\n' + (command != null ? command : arguments.toString());
+				List<ICLanguageSettingEntry> entries = entriesByCommand.get(key);
+				if (entries == null) {
+					if (arguments == null) {
+						arguments = StringShellTokenizer.tokenizeToList(command);
+					}
+					boolean msvc = !arguments.isEmpty() && isMsvcCompiler(arguments.get(0));
+					entries = intern(parseFlags(directory, arguments.subList(Math.min(1, arguments.size()), arguments.size()), msvc));
+					entriesByCommand.put(key, entries);
+				}
+				entriesByFile.put(sourceFile.getAbsolutePath(), entries);
+			}
+			reader.endArray();
+		}
+		return entriesByFile;
+	}
+
+	/**
+	 * @return <code>true</code> for cl and clang-cl, which also accept options starting with a slash
+	 */
+	private static boolean isMsvcCompiler(String compiler) {
+		String name = new File(compiler).getName().toLowerCase(Locale.ROOT);
+		if (name.endsWith(".exe")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		return name.equals("cl") || name.equals("clang-cl");
+	}
+
+	/**
+	 * @param directory the directory relative include paths are resolved against
+	 * @param arguments the compiler flags, without the compiler itself
+	 * @param msvc whether <code>/I</code> and <code>/D</code> are options, for
+	 *        other compilers they are absolute paths
+	 * @return the include paths and macros among the flags
+	 */
+	static List<ICLanguageSettingEntry> parseFlags(String directory, List<String> arguments, boolean msvc) {
+		List<ICLanguageSettingEntry> entries = new ArrayList<>();
+		String[] includeOptions = msvc ? new String[] { "-isystem", "-iquote", "-I", "/I" } : new String[] { "-isystem", "-iquote", "-I" };
+		for (int i = 0; i < arguments.size(); i++) {
+			String argument = arguments.get(i);
+			String value = null;
+			boolean include = false;
+			for (String option : includeOptions) {
+				if (argument.startsWith(option)) {
+					value = argument.length() > option.length() ? argument.substring(option.length())
+							: i + 1 < arguments.size() ? arguments.get(++i) : null;
+					include = true;
+					break;
+				}
+			}
+			if (!include && (argument.startsWith("-D") || (msvc && argument.startsWith("/D")))) {
+				value = argument.length() > 2 ? argument.substring(2) : i + 1 < arguments.size() ? arguments.get(++i) : null;
+			}
+			if (value == null || value.isEmpty()) {
+				continue;
+			}
+			if (include) {
+				File path = new File(value);
+				if (!path.isAbsolute()) {
+					path = new File(directory, value);
+				}
+				entries.add(intern(new CIncludePathEntry(path.getAbsolutePath(), 0)));
+			} else {
+				int equals = value.indexOf('=');
+				String name = equals < 0 ? value : value.substring(0, equals);
+				String macroValue = equals < 0 ? "" : value.substring(equals + 1);
+				entries.add(intern(new CMacroEntry(name, macroValue, 0)));
+			}
+		}
+		return entries;
+	}
+
+	static ICLanguageSettingEntry intern(ICLanguageSettingEntry entry) {
+		synchronized (entryPool) {
+			WeakReference<ICLanguageSettingEntry> reference = entryPool.get(entry);
+			ICLanguageSettingEntry pooled = reference == null ? null : reference.get();
+			if (pooled != null) {
+				return pooled;
+			}
+			entryPool.put(entry, new WeakReference<>(entry));
+			return entry;
+		}
+	}
+
+	static List<ICLanguageSettingEntry> intern(List<ICLanguageSettingEntry> entries) {
+		synchronized (listPool) {
+			WeakReference<List<ICLanguageSettingEntry>> reference = listPool.get(entries);
+			List<ICLanguageSettingEntry> pooled = reference == null ? null : reference.get();
+			if (pooled != null) {
+				return pooled;
+			}
+			List<ICLanguageSettingEntry> list = Collections.unmodifiableList(entries);
+			listPool.put(list, new WeakReference<>(list));
+			return list;
+		}
+	}
+
+}
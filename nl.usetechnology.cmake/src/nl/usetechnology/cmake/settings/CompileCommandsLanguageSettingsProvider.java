@@ -0,0 +1,150 @@
+package nl.usetechnology.cmake.settings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.core.CCorePlugin;
+import org.eclipse.cdt.core.index.IIndexManager;
+import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvider;
+import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvidersKeeper;
+import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsBaseProvider;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.model.ICElement;
+import org.eclipse.cdt.core.model.ICProject;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.CMakeNature;
+import nl.usetechnology.cmake.ProjectSettingsAccessor;
+import nl.usetechnology.cmake.helper.PluginDataIO;
+
+/**
+ * Provides the include paths and macros of a source file as cmake passes
+ * them to the compiler, read from the <code>compile_commands.json</code> of
+ * the build directory in use.
+ */
+public class CompileCommandsLanguageSettingsProvider extends LanguageSettingsBaseProvider {
+
+	public static final String ID = "nl.usetechnology.cmake.compileCommandsProvider";
+
+	/** The build directory in use, by project; looking up the architecture is too slow for every file. */
+	private static final Map<IProject, File> buildDirectories = new ConcurrentHashMap<>();
+
+	@Override
+	public List<ICLanguageSettingEntry> getSettingEntries(ICConfigurationDescription cfgDescription, IResource rc, String languageId) {
+		if (rc == null || rc.getType() != IResource.FILE || rc.getLocation() == null) {
+			// folders and the project get no settings of their own
+			return null;
+		}
+		IProject project = rc.getProject();
+		File buildDirectory = buildDirectories.get(project);
+		if (buildDirectory == null) {
+			if (!CMakeNature.isCMakeProject(project)) {
+				return null;
+			}
+			buildDirectory = getBuildDirectory(project);
+		}
+		CompileCommandsDatabase database = CompileCommandsDatabase.get(buildDirectory);
+		if (database == null) {
+			return null;
+		}
+		return database.getEntries(rc.getLocation().toFile());
+	}
+
+	private static File getBuildDirectory(IProject project) {
+		File buildDirectory = buildDirectories.get(project);
+		if (buildDirectory == null) {
+			buildDirectory = PluginDataIO.getBuildDirectory(project, ProjectSettingsAccessor.retrieveToolchain(project));
+			buildDirectories.put(project, buildDirectory);
+		}
+		return buildDirectory;
+	}
+
+	/**
+	 * Forgets the build directory of the project, to be called when another
+	 * architecture is taken into use.
+	 */
+	public static void invalidate(IProject project) {
+		buildDirectories.remove(project);
+	}
+
+	/**
+	 * Reads the <code>compile_commands.json</code> of the project again and
+	 * updates the index of the sources whose settings changed, e.g. after a
+	 * build ran cmake by itself.
+	 */
+	public static void databaseChanged(IProject project) {
+		File buildDirectory = getBuildDirectory(project);
+		CompileCommandsDatabase before = CompileCommandsDatabase.getCached(buildDirectory);
+		CompileCommandsDatabase after = CompileCommandsDatabase.reload(buildDirectory);
+		if (before == after || !isEnabled(project)) {
+			// unchanged, or nobody asks for the settings
+			return;
+		}
+		ICProject cproject = CoreModel.getDefault().create(project);
+		if (before == null || after == null) {
+			// the sources were indexed without any settings, or lose them all
+			CCorePlugin.getIndexManager().reindex(cproject);
+			return;
+		}
+		Set<String> changed = before.diff(after);
+		if (changed.isEmpty()) {
+			return;
+		}
+		if (changed.size() >= after.getFileCount()) {
+			// e.g. another toolchain: a reindex is cheaper
+			CCorePlugin.getIndexManager().reindex(cproject);
+			return;
+		}
+		List<ICElement> elements = new ArrayList<>(changed.size());
+		for (String source : changed) {
+			IFile file = project.getWorkspace().getRoot().getFileForLocation(new Path(source));
+			ICElement element = file == null ? null : CoreModel.getDefault().create(file);
+			if (element == null) {
+				// a file the model does not know, stay on the safe side
+				CCorePlugin.getIndexManager().reindex(cproject);
+				return;
+			}
+			elements.add(element);
+		}
+		try {
+			CCorePlugin.getIndexManager().update(elements.toArray(new ICElement[elements.size()]), IIndexManager.UPDATE_ALL);
+		} catch (CoreException e) {
+			Activator.logError("Unable to update index, reindexing " + project.getName(), e);
+			CCorePlugin.getIndexManager().reindex(cproject);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if a configuration of the project uses this provider
+	 */
+	private static boolean isEnabled(IProject project) {
+		ICProjectDescription description = CoreModel.getDefault().getProjectDescription(project, false);
+		if (description == null) {
+			return false;
+		}
+		for (ICConfigurationDescription configuration : description.getConfigurations()) {
+			if (!(configuration instanceof ILanguageSettingsProvidersKeeper)) {
+				continue;
+			}
+			for (ILanguageSettingsProvider provider : ((ILanguageSettingsProvidersKeeper) configuration).getLanguageSettingProviders()) {
+				if (ID.equals(provider.getId())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,175 @@
+package nl.usetechnology.cmake.settings;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvider;
+import org.eclipse.cdt.core.language.settings.providers.ILanguageSettingsProvidersKeeper;
+import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsBaseProvider;
+import org.eclipse.cdt.core.language.settings.providers.LanguageSettingsManager;
+import org.eclipse.cdt.core.language.settings.providers.ScannerDiscoveryLegacySupport;
+import org.eclipse.cdt.core.model.CoreModel;
+import org.eclipse.cdt.core.settings.model.CIncludePathEntry;
+import org.eclipse.cdt.core.settings.model.CMacroEntry;
+import org.eclipse.cdt.core.settings.model.ICConfigurationDescription;
+import org.eclipse.cdt.core.settings.model.ICLanguageSettingEntry;
+import org.eclipse.cdt.core.settings.model.ICProjectDescription;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+
+import nl.usetechnology.cmake.Activator;
+import nl.usetechnology.cmake.CMakeNature;
+import nl.usetechnology.cmake.ProjectSettingsAccessor;
+import nl.usetechnology.cmake.fileapi.CMakeProjectModel;
+import nl.usetechnology.cmake.fileapi.FileApi;
+import nl.usetechnology.cmake.helper.PluginDataIO;
+import nl.usetechnology.cmake.helper.StringShellTokenizer;
+
+/**
+ * Provides the include paths and macros of a source file from the compile
+ * groups of the CMake file API model in use. The file API backend does not
+ * generate a <code>.cproject</code>, so this provider is the only source of
+ * language settings for such projects.
+ */
+public class ProjectModelLanguageSettingsProvider extends LanguageSettingsBaseProvider {
+
+	public static final String ID = "nl.usetechnology.cmake.projectModelProvider";
+
+	/** Settings of the model in use, by project. */
+	private static final Map<IProject, Map<String, List<ICLanguageSettingEntry>>> settingsByProject = new ConcurrentHashMap<>();
+
+	@Override
+	public List<ICLanguageSettingEntry> getSettingEntries(ICConfigurationDescription cfgDescription, IResource rc, String languageId) {
+		if (rc == null || rc.getType() != IResource.FILE || rc.getLocation() == null) {
+			// folders and the project get no settings of their own
+			return null;
+		}
+		IProject project = rc.getProject();
+		Map<String, List<ICLanguageSettingEntry>> settings = settingsByProject.get(project);
+		if (settings == null) {
+			if (!CMakeNature.isCMakeProject(project)) {
+				return null;
+			}
+			// not configured since startup, use the latest reply on disk
+			String architecture = ProjectSettingsAccessor.retrieveToolchain(project);
+			File buildDirectory = PluginDataIO.getBuildDirectory(project, architecture);
+			settings = getSettingsBySource(FileApi.read(buildDirectory), buildDirectory);
+			settingsByProject.put(project, settings);
+		}
+		List<ICLanguageSettingEntry> entries = settings.get(rc.getProjectRelativePath().toString());
+		return entries != null ? entries : settings.get(rc.getLocation().toFile().getAbsolutePath());
+	}
+
+	/**
+	 * Makes the model the one in use for the project and makes sure the
+	 * configurations of the project consult this provider.
+	 * @param model the model, <code>null</code> if cmake did not answer the query
+	 */
+	public static void setModel(IProject project, CMakeProjectModel model, File buildDirectory) {
+		settingsByProject.put(project, getSettingsBySource(model, buildDirectory));
+		enable(project);
+	}
+
+	/**
+	 * Forgets the model of the project, e.g. when it is generated by the
+	 * eclipse generator again.
+	 */
+	public static void clearModel(IProject project) {
+		settingsByProject.remove(project);
+	}
+
+	private static void enable(IProject project) {
+		ICProjectDescription description = CoreModel.getDefault().getProjectDescription(project, true);
+		if (description == null) {
+			return;
+		}
+		boolean changed = false;
+		for (ICConfigurationDescription configuration : description.getConfigurations()) {
+			if (!(configuration instanceof ILanguageSettingsProvidersKeeper)) {
+				continue;
+			}
+			ILanguageSettingsProvidersKeeper keeper = (ILanguageSettingsProvidersKeeper) configuration;
+			List<ILanguageSettingsProvider> providers = new ArrayList<>(keeper.getLanguageSettingProviders());
+			boolean present = false;
+			for (ILanguageSettingsProvider provider : providers) {
+				present |= ID.equals(provider.getId());
+			}
+			if (!present) {
+				providers.add(0, LanguageSettingsManager.getWorkspaceProvider(ID));
+				keeper.setLanguageSettingProviders(providers);
+				changed = true;
+			}
+		}
+		try {
+			if (!ScannerDiscoveryLegacySupport.isLanguageSettingsProvidersFunctionalityEnabled(project)) {
+				ScannerDiscoveryLegacySupport.setLanguageSettingsProvidersFunctionalityEnabled(project, true);
+				changed = true;
+			}
+			if (changed) {
+				CoreModel.getDefault().setProjectDescription(project, description);
+			}
+		} catch (CoreException e) {
+			Activator.logError("Unable to enable the CMake language settings of " + project.getName(), e);
+		}
+	}
+
+	/**
+	 * @return the settings by project relative path of the source, or by
+	 *         absolute path for sources outside of the project
+	 */
+	private static Map<String, List<ICLanguageSettingEntry>> getSettingsBySource(CMakeProjectModel model, File buildDirectory) {
+		Map<String, List<ICLanguageSettingEntry>> settings = new HashMap<>();
+		if (model == null) {
+			return settings;
+		}
+		// a source compiled by several targets gets the settings of all of them
+		Map<String, Set<ICLanguageSettingEntry>> merged = new HashMap<>();
+		for (CMakeProjectModel.Target target : model.getTargets()) {
+			for (CMakeProjectModel.CompileGroup group : target.getCompileGroups()) {
+				List<ICLanguageSettingEntry> entries = getEntries(group, buildDirectory);
+				for (String source : group.getSources()) {
+					File file = new File(source);
+					String key = file.isAbsolute() ? file.getAbsolutePath() : source;
+					Set<ICLanguageSettingEntry> sourceEntries = merged.get(key);
+					if (sourceEntries == null) {
+						sourceEntries = new LinkedHashSet<>(entries);
+						merged.put(key, sourceEntries);
+					} else {
+						sourceEntries.addAll(entries);
+					}
+				}
+			}
+		}
+		for (Map.Entry<String, Set<ICLanguageSettingEntry>> entry : merged.entrySet()) {
+			settings.put(entry.getKey(), CompileCommandsDatabase.intern(new ArrayList<>(entry.getValue())));
+		}
+		return settings;
+	}
+
+	private static List<ICLanguageSettingEntry> getEntries(CMakeProjectModel.CompileGroup group, File buildDirectory) {
+		List<ICLanguageSettingEntry> entries = new ArrayList<>();
+		for (String include : group.getIncludes()) {
+			entries.add(CompileCommandsDatabase.intern(new CIncludePathEntry(include, 0)));
+		}
+		for (String define : group.getDefines()) {
+			int equals = define.indexOf('=');
+			String name = equals < 0 ? define : define.substring(0, equals);
+			String value = equals < 0 ? "" : define.substring(equals + 1);
+			entries.add(CompileCommandsDatabase.intern(new CMacroEntry(name, value, 0)));
+		}
+		for (String fragment : group.getFragments()) {
+			// e.g. -D and -I options in CMAKE_<LANG>_FLAGS; the compiler is not known
+			// here, so /D and /I are taken for paths
+			entries.addAll(CompileCommandsDatabase.parseFlags(buildDirectory.getAbsolutePath(), StringShellTokenizer.tokenizeToList(fragment), false));
+		}
+		return entries;
+	}
+
+}